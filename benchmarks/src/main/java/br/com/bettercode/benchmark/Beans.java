@@ -0,0 +1,119 @@
+package br.com.bettercode.benchmark;
+
+import javax.persistence.Column;
+import javax.persistence.Embedded;
+
+import br.com.bettercode.resulttransformer.Columns;
+
+/**
+ * Classes mapeadas usadas nos benchmarks.
+ */
+public final class Beans {
+
+	private Beans() {
+	}
+
+	public static class Narrow {
+
+		@Column(name = "C0")
+		@Columns(names = { "C0" })
+		private Long c0;
+
+		@Column(name = "C1")
+		@Columns(names = { "C1" })
+		private String c1;
+
+		@Column(name = "C2")
+		@Columns(names = { "C2" })
+		private Integer c2;
+
+		@Column(name = "C3")
+		@Columns(names = { "C3" })
+		private double c3;
+	}
+
+	public static class Wide {
+
+		@Column(name = "C0")
+		@Columns(names = { "C0" })
+		private Long c0;
+
+		@Column(name = "C1")
+		@Columns(names = { "C1" })
+		private String c1;
+
+		@Column(name = "C2")
+		@Columns(names = { "C2" })
+		private Integer c2;
+
+		@Column(name = "C3")
+		@Columns(names = { "C3" })
+		private double c3;
+
+		@Column(name = "C4")
+		@Columns(names = { "C4" })
+		private Long c4;
+
+		@Column(name = "C5")
+		@Columns(names = { "C5" })
+		private String c5;
+
+		@Column(name = "C6")
+		@Columns(names = { "C6" })
+		private Integer c6;
+
+		@Column(name = "C7")
+		@Columns(names = { "C7" })
+		private double c7;
+
+		@Column(name = "C8")
+		@Columns(names = { "C8" })
+		private Long c8;
+
+		@Column(name = "C9")
+		@Columns(names = { "C9" })
+		private String c9;
+
+		@Column(name = "C10")
+		@Columns(names = { "C10" })
+		private Integer c10;
+
+		@Column(name = "C11")
+		@Columns(names = { "C11" })
+		private double c11;
+
+		@Column(name = "C12")
+		@Columns(names = { "C12" })
+		private Long c12;
+
+		@Column(name = "C13")
+		@Columns(names = { "C13" })
+		private String c13;
+
+		@Column(name = "C14")
+		@Columns(names = { "C14" })
+		private Integer c14;
+
+		@Column(name = "C15")
+		@Columns(names = { "C15" })
+		private double c15;
+	}
+
+	public static class Embedded1 {
+
+		@Column(name = "C0")
+		private Long c0;
+
+		@Embedded
+		private Narrow narrow;
+	}
+
+	public static class Embedded2 {
+
+		@Column(name = "C1")
+		private String c1;
+
+		@Embedded
+		private Embedded1 embedded;
+	}
+}
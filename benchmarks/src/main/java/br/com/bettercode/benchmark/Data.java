@@ -0,0 +1,66 @@
+package br.com.bettercode.benchmark;
+
+import java.sql.Types;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.MockResultSetMetaData;
+
+/**
+ * Dados em memória compatíveis com as classes de {@link Beans}: a coluna Cn
+ * segue o tipo da propriedade cn.
+ */
+final class Data {
+
+	private static final int[] TYPES = { Types.BIGINT, Types.VARCHAR, Types.INTEGER, Types.DOUBLE };
+
+	private Data() {
+	}
+
+	static String[] columnNames(int columns) {
+		final String[] names = new String[columns];
+		for (int c = 0; c < columns; c++) {
+			names[c] = "C" + c;
+		}
+		return names;
+	}
+
+	static Object value(int row, int column) {
+		switch (column % TYPES.length) {
+		case 0:
+			return Long.valueOf(row);
+		case 1:
+			return "value" + row;
+		case 2:
+			return Integer.valueOf(row % 1000);
+		default:
+			return Double.valueOf(row * 1.5);
+		}
+	}
+
+	static Object[][] tuples(int rows, int columns) {
+		final Object[][] tuples = new Object[rows][columns];
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < columns; c++) {
+				tuples[r][c] = value(r, c);
+			}
+		}
+		return tuples;
+	}
+
+	static MockResultSet resultSet(int rows, int columns) {
+		final MockResultSet rs = new MockResultSet("benchmark");
+		final MockResultSetMetaData metaData = new MockResultSetMetaData();
+		metaData.setColumnCount(columns);
+		for (int c = 0; c < columns; c++) {
+			final Object[] values = new Object[rows];
+			for (int r = 0; r < rows; r++) {
+				values[r] = value(r, c);
+			}
+			rs.addColumn("C" + c, values);
+			metaData.setColumnName(c + 1, "C" + c);
+			metaData.setColumnType(c + 1, TYPES[c % TYPES.length]);
+		}
+		rs.setResultSetMetaData(metaData);
+		return rs;
+	}
+}
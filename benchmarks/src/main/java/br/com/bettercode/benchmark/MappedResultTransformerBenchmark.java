@@ -0,0 +1,71 @@
+package br.com.bettercode.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import br.com.bettercode.resulttransformer.MappedResultTransformer;
+
+/**
+ * {@link MappedResultTransformer#transformTuple} variando a quantidade de
+ * linhas e a profundidade de propriedades {@code @Embedded}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappedResultTransformerBenchmark {
+
+	@Param({ "1", "100", "10000" })
+	int rows;
+
+	@Param({ "0", "1", "2" })
+	int depth;
+
+	private Object[][] tuples;
+
+	private String[] aliases;
+
+	private MappedResultTransformer<?> transformer;
+
+	@Setup
+	public void setUp() {
+		tuples = Data.tuples(rows, 16);
+		aliases = Data.columnNames(16);
+		transformer = new MappedResultTransformer<Object>(depth == 0 ? Beans.Wide.class
+				: depth == 1 ? Beans.Embedded1.class : Beans.Embedded2.class);
+	}
+
+	/**
+	 * Mesmo array de aliases em todas as linhas, como no Hibernate.
+	 */
+	@Benchmark
+	public void transformTuple(Blackhole bh) {
+		for (Object[] tuple : tuples) {
+			bh.consume(transformer.transformTuple(tuple, aliases));
+		}
+	}
+
+	/**
+	 * Um novo array de aliases por linha, sem reaproveitar a resolução.
+	 */
+	@Benchmark
+	public void transformTupleWithNewAliases(Blackhole bh) {
+		for (Object[] tuple : tuples) {
+			bh.consume(transformer.transformTuple(tuple, aliases.clone()));
+		}
+	}
+}
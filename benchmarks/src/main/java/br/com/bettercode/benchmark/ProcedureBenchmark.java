@@ -0,0 +1,113 @@
+package br.com.bettercode.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.bettercode.procedure.Procedure;
+import br.com.bettercode.procedure.ProcedureResult;
+import br.com.bettercode.procedure.SqlArray;
+import br.com.bettercode.procedure.SqlType;
+
+import com.mockrunner.mock.jdbc.MockConnection;
+
+/**
+ * Criação, binding e execução de procedures contra uma conexão em memória
+ * (mockrunner). A resolução do {@link SqlType} de um valor é medida pela API
+ * pública, em {@link SqlArray#getElementType()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcedureBenchmark {
+
+	@Param({ "2", "8", "32" })
+	int parameters;
+
+	private String signature;
+
+	private String[] names;
+
+	private Session session;
+
+	private SqlArray array;
+
+	@Setup
+	public void setUp() {
+		names = new String[parameters];
+		final StringBuilder sb = new StringBuilder("sp_benchmark(");
+		for (int i = 0; i < parameters; i++) {
+			names[i] = "param" + i;
+			sb.append(i == 0 ? ":" : ", :").append(names[i]);
+		}
+		signature = sb.append(")").toString();
+		session = session(new MockConnection());
+		array = SqlArray.of(Arrays.asList(1, 2, 3));
+	}
+
+	@Benchmark
+	public Procedure create() {
+		return Procedure.create(session, signature);
+	}
+
+	@Benchmark
+	public Procedure bind() {
+		final Procedure procedure = Procedure.create(session, signature);
+		for (int i = 0; i < names.length - 1; i++) {
+			procedure.input(names[i], i);
+		}
+		return procedure.output(names[names.length - 1], SqlType.INTEGER);
+	}
+
+	@Benchmark
+	public ProcedureResult execute() {
+		return bind().execute();
+	}
+
+	@Benchmark
+	public SqlType sqlTypeFromType() {
+		return array.getElementType();
+	}
+
+	/**
+	 * Sessão mínima: apenas doWork é suportado.
+	 */
+	static Session session(final MockConnection connection) {
+		return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] { Session.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("doWork")) {
+							((Work) args[0]).execute(connection);
+							return null;
+						}
+						if (method.getName().equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						}
+						if (method.getName().equals("equals")) {
+							return proxy == args[0];
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+}
@@ -0,0 +1,64 @@
+package br.com.bettercode.benchmark;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.bettercode.resulttransformer.ColumnarResult;
+import br.com.bettercode.resulttransformer.ResultSetMapper;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+/**
+ * {@link ResultSetMapper#mapResultSet} e {@link ResultSetMapper#mapColumnar}
+ * sobre result sets em memória, variando a quantidade de linhas e a largura
+ * da classe mapeada.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResultSetMapperBenchmark {
+
+	@Param({ "1", "100", "10000" })
+	int rows;
+
+	@Param({ "4", "16" })
+	int columns;
+
+	private MockResultSet rs;
+
+	private Class<?> clazz;
+
+	@Setup
+	public void setUp() {
+		rs = Data.resultSet(rows, columns);
+		clazz = columns <= 4 ? Beans.Narrow.class : Beans.Wide.class;
+	}
+
+	@Benchmark
+	public List<?> mapResultSet() throws SQLException {
+		rs.beforeFirst();
+		return ResultSetMapper.mapResultSet(rs, clazz);
+	}
+
+	@Benchmark
+	public ColumnarResult mapColumnar() throws SQLException {
+		rs.beforeFirst();
+		return ResultSetMapper.mapColumnar(rs);
+	}
+}
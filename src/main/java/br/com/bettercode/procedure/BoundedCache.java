@@ -0,0 +1,71 @@
+package br.com.bettercode.procedure;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache LRU limitado e thread-safe. Ultrapassado o tamanho máximo, a entrada
+ * usada há mais tempo é descartada, preservando as chaves mais acessadas e o
+ * que foi aprendido sobre elas. Tamanho menor ou igual a zero desabilita o
+ * cache.
+ *
+ * @param <K>
+ *            - tipo da chave
+ * @param <V>
+ *            - tipo do valor
+ */
+class BoundedCache<K, V> {
+
+	private final int maxSize;
+
+	private final LinkedHashMap<K, V> entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > maxSize;
+		}
+	};
+
+	BoundedCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return valor da chave ou null caso não exista ou o cache esteja
+	 *         desabilitado
+	 */
+	synchronized V get(K key) {
+		return maxSize <= 0 ? null : entries.get(key);
+	}
+
+	/**
+	 * Armazena o valor caso a chave ainda não exista e retorna o valor
+	 * efetivamente associado à chave (o próprio valor com o cache
+	 * desabilitado).
+	 */
+	synchronized V putIfAbsent(K key, V value) {
+		if (maxSize <= 0) {
+			return value;
+		}
+		final V current = entries.get(key);
+		if (current != null) {
+			return current;
+		}
+		entries.put(key, value);
+		return value;
+	}
+
+	synchronized int size() {
+		return entries.size();
+	}
+
+	synchronized void clear() {
+		entries.clear();
+	}
+
+	final int maxSize() {
+		return maxSize;
+	}
+}
@@ -0,0 +1,74 @@
+package br.com.bettercode.procedure;
+
+/**
+ * Aprende, para uma assinatura compilada, a quantidade típica de linhas e a
+ * largura média das linhas dos result sets mapeados, e sugere o fetch size
+ * que cabe no orçamento de memória por ida ao servidor (veja
+ * {@link ProcedureDefaults#getFetchBudget()}).
+ *
+ * <p>
+ * As médias são móveis exponenciais; atualizações concorrentes podem perder
+ * uma amostra, o que é irrelevante para uma estimativa.
+ * </p>
+ */
+final class FetchSizeAdvisor {
+
+	static final int MIN_FETCH_SIZE = 10;
+
+	static final int MAX_FETCH_SIZE = 10000;
+
+	/** Peso de cada nova amostra nas médias. */
+	private static final double ALPHA = 0.2d;
+
+	/** Folga sobre a quantidade típica de linhas. */
+	private static final double ROWS_HEADROOM = 1.25d;
+
+	private volatile double rows = -1d;
+
+	private volatile double width = 0d;
+
+	/**
+	 * @param rows
+	 *            - linhas mapeadas
+	 * @param width
+	 *            - largura estimada de cada linha, em bytes
+	 */
+	void observe(int rows, int width) {
+		if (this.rows < 0) {
+			this.width = width;
+			this.rows = rows;
+		} else {
+			this.width += ALPHA * (width - this.width);
+			this.rows += ALPHA * (rows - this.rows);
+		}
+	}
+
+	/**
+	 * @param budget
+	 *            - bytes por ida ao servidor
+	 * @return fetch size sugerido ou -1 sem orçamento ou amostras
+	 */
+	int fetchSize(long budget) {
+		final double rows = this.rows;
+		if (budget <= 0 || rows < 0) {
+			return -1;
+		}
+		final long byBudget = budget / Math.max(1L, Math.round(width));
+		final long byRows = (long) Math.ceil(rows * ROWS_HEADROOM) + 1;
+		return (int) Math.max(MIN_FETCH_SIZE, Math.min(MAX_FETCH_SIZE, Math.min(byBudget, byRows)));
+	}
+
+	/**
+	 * @return quantidade típica de linhas ou -1 sem amostras
+	 */
+	long expectedRows() {
+		return Math.round(rows);
+	}
+
+	/**
+	 * @return largura média das linhas, em bytes
+	 */
+	int rowWidth() {
+		return (int) Math.round(width);
+	}
+}
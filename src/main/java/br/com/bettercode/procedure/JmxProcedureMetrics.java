@@ -0,0 +1,101 @@
+package br.com.bettercode.procedure;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Acumula as medições por procedure e registra um {@link ProcedureStatsMBean}
+ * para cada uma, sob o domínio {@value #DOMAIN}.
+ * 
+ * <pre>
+ * Procedure.setMetrics(new JmxProcedureMetrics());
+ * </pre>
+ */
+public class JmxProcedureMetrics implements ProcedureMetrics {
+
+	public static final String DOMAIN = "br.com.bettercode.procedure";
+
+	private static Logger log = Logger.getLogger(JmxProcedureMetrics.class);
+
+	private final ConcurrentMap<String, ProcedureStats> stats = new ConcurrentHashMap<String, ProcedureStats>();
+
+	private final MBeanServer server;
+
+	public JmxProcedureMetrics() {
+		this(ManagementFactory.getPlatformMBeanServer());
+	}
+
+	public JmxProcedureMetrics(MBeanServer server) {
+		Validator.GET.notNull(server);
+		this.server = server;
+	}
+
+	@Override
+	public void phase(String procedure, Phase phase, long nanos) {
+		stats(procedure).phase(phase, nanos);
+	}
+
+	@Override
+	public void rowsMapped(String procedure, long rows, long bytes) {
+		stats(procedure).rowsMapped(rows, bytes);
+	}
+
+	@Override
+	public void error(String procedure, Throwable error) {
+		stats(procedure).error();
+	}
+
+	@Override
+	public void fetchSize(String procedure, int fetchSize, long expectedRows, int rowWidth) {
+		stats(procedure).fetchSize(fetchSize, expectedRows, rowWidth);
+	}
+
+	/**
+	 * @return estatísticas da procedure (criadas e registradas no primeiro uso)
+	 */
+	public ProcedureStats stats(String procedure) {
+		ProcedureStats current = stats.get(procedure);
+		if (current == null) {
+			final ProcedureStats created = new ProcedureStats(procedure);
+			current = stats.putIfAbsent(procedure, created);
+			if (current == null) {
+				current = created;
+				register(created);
+			}
+		}
+		return current;
+	}
+
+	private void register(ProcedureStats stats) {
+		try {
+			server.registerMBean(stats, objectName(stats.getProcedure()));
+		} catch (JMException e) {
+			log.warn("Error while registering procedure MBean. " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Remove do servidor JMX os MBeans registrados por esta instância.
+	 */
+	public void unregister() {
+		for (String procedure : stats.keySet()) {
+			try {
+				server.unregisterMBean(objectName(procedure));
+			} catch (JMException e) {
+				log.warn("Error while unregistering procedure MBean. " + e.getMessage(), e);
+			}
+		}
+		stats.clear();
+	}
+
+	private static ObjectName objectName(String procedure) throws JMException {
+		return new ObjectName(DOMAIN + ":type=ProcedureStats,name=" + ObjectName.quote(procedure));
+	}
+}
@@ -0,0 +1,76 @@
+package br.com.bettercode.procedure;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latências com faixas em potências de 2 (em nanossegundos).
+ * Registro sem bloqueio; percentis têm a precisão da faixa.
+ */
+final class LatencyHistogram {
+
+	private static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong total = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+	void record(long nanos) {
+		final long value = Math.max(0, nanos);
+		buckets.incrementAndGet(BUCKETS - 1 - Long.numberOfLeadingZeros(value | 1));
+		count.incrementAndGet();
+		total.addAndGet(value);
+
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	long count() {
+		return count.get();
+	}
+
+	long mean() {
+		final long n = count.get();
+		return n == 0 ? 0 : total.get() / n;
+	}
+
+	long max() {
+		return max.get();
+	}
+
+	/**
+	 * @param percentile
+	 *            - entre 0 e 100
+	 * @return limite superior da faixa que contém o percentil
+	 */
+	long percentile(double percentile) {
+		final long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		final long rank = (long) Math.ceil(n * Math.min(100, Math.max(0, percentile)) / 100d);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return i == BUCKETS - 1 ? Long.MAX_VALUE : Math.min((1L << (i + 1)) - 1, max.get());
+			}
+		}
+		return max.get();
+	}
+
+	void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+}
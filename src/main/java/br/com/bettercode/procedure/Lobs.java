@@ -0,0 +1,118 @@
+package br.com.bettercode.procedure;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLException;
+
+/**
+ * Transferência de BLOBs e CLOBs em blocos de tamanho fixo
+ * ({@value #BUFFER_SIZE} bytes ou caracteres), sem montar o conteúdo em
+ * memória. O LOB é lido pelo seu locator e deve ser transferido antes do fim
+ * da transação ou da liberação da conexão.
+ *
+ * @see SqlType#BLOB
+ * @see SqlType#CLOB
+ */
+public final class Lobs {
+
+	public static final int BUFFER_SIZE = 64 * 1024;
+
+	private Lobs() {
+	}
+
+	/**
+	 * @return bytes transferidos
+	 */
+	public static long transfer(Blob blob, WritableByteChannel channel) throws SQLException, IOException {
+		Validator.GET.notNull(blob, channel);
+		final InputStream in = blob.getBinaryStream();
+		try {
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			final ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+			long total = 0;
+			for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+				wrapped.clear().limit(read);
+				while (wrapped.hasRemaining()) {
+					channel.write(wrapped);
+				}
+				total += read;
+			}
+			return total;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Grava o BLOB no arquivo, substituindo seu conteúdo.
+	 *
+	 * @return bytes transferidos
+	 */
+	public static long transfer(Blob blob, File file) throws SQLException, IOException {
+		Validator.GET.notNull(blob, file);
+		final FileOutputStream out = new FileOutputStream(file);
+		try {
+			return transfer(blob, out.getChannel());
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * @return caracteres transferidos
+	 */
+	public static long transfer(Clob clob, Writer writer) throws SQLException, IOException {
+		Validator.GET.notNull(clob, writer);
+		final Reader in = clob.getCharacterStream();
+		try {
+			final char[] buffer = new char[BUFFER_SIZE];
+			long total = 0;
+			for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+				writer.write(buffer, 0, read);
+				total += read;
+			}
+			writer.flush();
+			return total;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Grava o CLOB no canal, codificado com o charset informado. O canal não
+	 * é fechado.
+	 *
+	 * @return caracteres transferidos
+	 */
+	public static long transfer(Clob clob, WritableByteChannel channel, Charset charset) throws SQLException,
+			IOException {
+		Validator.GET.notNull(clob, channel, charset);
+		return transfer(clob, Channels.newWriter(channel, charset.newEncoder(), BUFFER_SIZE));
+	}
+
+	/**
+	 * Grava o CLOB no arquivo, codificado com o charset informado,
+	 * substituindo seu conteúdo.
+	 *
+	 * @return caracteres transferidos
+	 */
+	public static long transfer(Clob clob, File file, Charset charset) throws SQLException, IOException {
+		Validator.GET.notNull(clob, file, charset);
+		final FileOutputStream out = new FileOutputStream(file);
+		try {
+			return transfer(clob, out.getChannel(), charset);
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package br.com.bettercode.procedure;
+
+/**
+ * MySQL: procedures retornam result sets, não cursores de saída.
+ */
+public class MySqlProcedureDialect extends ProcedureDialect {
+
+	@Override
+	public boolean supportsCursorOutput() {
+		return false;
+	}
+}
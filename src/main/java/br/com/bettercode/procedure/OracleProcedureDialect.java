@@ -0,0 +1,106 @@
+package br.com.bettercode.procedure;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import oracle.jdbc.OracleConnection;
+import oracle.jdbc.OracleStatement;
+import oracle.jdbc.driver.OracleTypes;
+import oracle.sql.ARRAY;
+import oracle.sql.ArrayDescriptor;
+
+/**
+ * Oracle: parâmetros nulos com {@link Types#NULL} e cursores de saída como
+ * {@link OracleTypes#CURSOR}.
+ *
+ * <p>
+ * Habilita o cache implícito de statements do driver, com o tamanho definido
+ * pela propriedade de sistema {@value #STATEMENT_CACHE_SIZE_PROPERTY} (padrão
+ * {@value #DEFAULT_STATEMENT_CACHE_SIZE}; 0 desabilita). Assim as procedures
+ * que não passam pelo {@link StatementCache}, como as que possuem cursores de
+ * saída, também deixam de ser reprocessadas pelo servidor a cada execução. O
+ * row prefetch dos cursores de saída segue o fetch size da procedure.
+ * </p>
+ * 
+ * <p>
+ * Coleções ({@link SqlArray}) são associadas como arrays de um tipo coleção
+ * nomeado.
+ * </p>
+ */
+public class OracleProcedureDialect extends ProcedureDialect {
+
+	public static final String STATEMENT_CACHE_SIZE_PROPERTY = "br.com.bettercode.procedure.oracleStatementCacheSize";
+
+	public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+	private final int statementCacheSize;
+
+	public OracleProcedureDialect() {
+		this(Integer.getInteger(STATEMENT_CACHE_SIZE_PROPERTY, DEFAULT_STATEMENT_CACHE_SIZE));
+	}
+
+	/**
+	 * @param statementCacheSize
+	 *            - tamanho do cache implícito de statements; 0 desabilita
+	 */
+	public OracleProcedureDialect(int statementCacheSize) {
+		Validator.GET.greaterOrEqualsZero(statementCacheSize);
+		this.statementCacheSize = statementCacheSize;
+	}
+
+	@Override
+	public int nullType() {
+		// Database compatibility: Oracle demands to use SqlType.NULL for null
+		// parameters
+		return Types.NULL;
+	}
+
+	@Override
+	public int cursorType() {
+		return OracleTypes.CURSOR;
+	}
+
+	@Override
+	public void configure(Connection connection) throws SQLException {
+		if (statementCacheSize == 0) {
+			return;
+		}
+		final OracleConnection oracle = unwrap(connection, OracleConnection.class);
+		if (oracle != null && !oracle.getImplicitCachingEnabled()) {
+			oracle.setStatementCacheSize(statementCacheSize);
+			oracle.setImplicitCachingEnabled(true);
+		}
+	}
+
+	@Override
+	public void cursorFetchSize(CallableStatement call, int fetchSize) throws SQLException {
+		final OracleStatement oracle = unwrap(call, OracleStatement.class);
+		if (oracle != null) {
+			oracle.setRowPrefetch(fetchSize);
+		}
+	}
+
+	/**
+	 * Associa a coleção como {@link ARRAY} do tipo coleção informado (VARRAY
+	 * ou nested table). O descritor do tipo fica no cache da conexão, de modo
+	 * que o dicionário é consultado apenas na primeira associação.
+	 */
+	@Override
+	public void bindArray(Connection connection, CallableStatement call, int ordinal, SqlArray array)
+			throws SQLException {
+		if (array.getTypeName() == null) {
+			throw new IllegalArgumentException(
+					"Oracle arrays require the collection type name; use SqlArray.of(typeName, values).");
+		}
+		final OracleConnection oracle = unwrap(connection, OracleConnection.class);
+		final Connection target = oracle == null ? connection : oracle;
+		final ArrayDescriptor descriptor = ArrayDescriptor.createDescriptor(array.getTypeName(), target);
+		call.setArray(ordinal, new ARRAY(descriptor, target, array.values()));
+	}
+
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+}
@@ -2,63 +2,86 @@ package br.com.bettercode.procedure;
 
 import java.sql.CallableStatement;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Types;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Scanner;
+import java.util.List;
+import java.util.Queue;
 import java.util.Set;
-import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.hibernate.Session;
-import org.hibernate.impl.SessionImpl;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.engine.SessionFactoryImplementor;
 import org.hibernate.jdbc.Work;
 
 
+import br.com.bettercode.procedure.ProcedureMetrics.Phase;
+import br.com.bettercode.resulttransformer.ColumnarResult;
 import br.com.bettercode.resulttransformer.ResultSetMapper;
+import br.com.bettercode.resulttransformer.RowHandler;
 
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 public final class Procedure {
 
 	Session session;
-	String query;
-	Map<String, Object> inputs;
-	Map<String, SqlType> outputs;
-	Map<String, Boolean> registeredParameters;
-	Map<String, Integer> parametersOrder;
+	ProcedureTemplate template;
+	Object[] inputs;
+	boolean[] inputSet;
+	SqlType[] outputs;
 	Class<?> resultSetClazz;
 
+	/**
+	 * Mapeamento de cada result set retornado, na ordem; vazio quando apenas o
+	 * primeiro é mapeado para resultSetClazz.
+	 */
+	final List<ResultSetMapping<?>> resultSets = Lists.newArrayList();
+	boolean columnar;
+	long cacheTtlNanos;
+	boolean singleFlight;
+
+	/** Opções do statement; -1 usa o valor de {@link ProcedureDefaults}. */
+	int fetchSize = -1;
+	int maxRows = -1;
+	int timeoutSeconds = -1;
+
 	/**
 	 * LOG
 	 */
-	Logger log = Logger.getLogger(getClass());
+	static Logger log = Logger.getLogger(Procedure.class);
 
-	private Procedure(Session session, String query, Map<String, Boolean> registeredParameters,
-			Map<String, Integer> parametersOrder, Class<?> clazz) {
+	/**
+	 * Medições das execuções; desligadas por padrão.
+	 */
+	private static volatile ProcedureMetrics metrics = ProcedureMetrics.NOOP;
+
+	private Procedure(Session session, ProcedureTemplate template, Class<?> clazz) {
 		this.session = session;
-		this.query = query;
-		this.inputs = Maps.newHashMap();
-		this.outputs = Maps.newHashMap();
-		this.registeredParameters = registeredParameters;
-		this.parametersOrder = parametersOrder;
+		this.template = template;
+		this.inputs = new Object[template.parameterCount()];
+		this.inputSet = new boolean[template.parameterCount()];
+		this.outputs = new SqlType[template.parameterCount()];
 		this.resultSetClazz = clazz;
 	}
 
+	static Procedure create(Session session, ProcedureTemplate template, Class<?> clazz) {
+		Validator.GET.notNull(session, template);
+		return new Procedure(session, template, clazz);
+	}
+
 	public static Procedure create(Session session, String procedure, Class<?> clazz) {
 		Validator.GET.notNull(session, procedure, clazz).notEmpty(procedure);
-		return new Procedure(session, query(procedure), registerParameters(procedure),
-				registerParametersOrder(procedure), clazz);
+		return new Procedure(session, ProcedureTemplate.compile(procedure), clazz);
 	}
 
 	public static Procedure create(Session session, String procedure) {
 		Validator.GET.notNull(session, procedure).notEmpty(procedure);
-		return new Procedure(session, query(procedure), registerParameters(procedure),
-				registerParametersOrder(procedure), null);
+		return new Procedure(session, ProcedureTemplate.compile(procedure), null);
 	}
 
 	/**
@@ -73,108 +96,360 @@ public final class Procedure {
 	 */
 	public static Procedure createFunction(Session session, String function) {
 		Validator.GET.notNull(session, function).notEmpty(function);
+		return new Procedure(session, ProcedureTemplate.compileFunction(function), null);
+	}
 
-		Pattern p = Pattern.compile("\\w+\\s+=\\s+");
-		Matcher m = p.matcher(function);
-		String funcWithoutReturnParam = null;
-
-		if (m.find()) {
-			// Obtém assinatura da função sem o parâmetro de retorno
-			funcWithoutReturnParam = function.substring(m.end());
-		} else {
-			// Não condiz com o formato esperado
-			throw new IllegalArgumentException(String.format("Parameter [%s] has illegal format.", function));
-		}
+	/**
+	 * Compila a assinatura da procedure para ser reutilizada em várias
+	 * execuções.
+	 * 
+	 * @see ProcedureTemplate#compile(String)
+	 */
+	public static ProcedureTemplate compile(String procedure) {
+		return ProcedureTemplate.compile(procedure);
+	}
 
-		return new Procedure(session, queryFunction(funcWithoutReturnParam), registerParameters(function),
-				registerParametersOrder(function), null);
+	/**
+	 * Registra o receptor das medições de todas as execuções de procedures.
+	 * Use {@link ProcedureMetrics#NOOP} para desligar as medições.
+	 * 
+	 * @see JmxProcedureMetrics
+	 */
+	public static void setMetrics(ProcedureMetrics metrics) {
+		Validator.GET.notNull(metrics);
+		Procedure.metrics = metrics;
 	}
 
-	private static String queryFunction(String function) {
-		for (String param : registerParameters(function).keySet()) {
-			function = function.replace(":" + param, "?");
-		}
-		return String.format("{ ? = call %s }", function);
+	public static ProcedureMetrics getMetrics() {
+		return metrics;
 	}
 
-	private static String query(String procedure) {
-		for (String param : registerParameters(procedure).keySet()) {
-			procedure = procedure.replace(":" + param, "?");
-		}
-		return String.format("{ call %s }", procedure);
+	/**
+	 * Habilita o cache do resultado desta procedure, que deve ser somente
+	 * leitura e depender apenas dos valores de entrada. Procedures com cursores
+	 * de saída nunca são armazenadas.
+	 * 
+	 * @param ttl
+	 *            - validade do resultado
+	 * @param unit
+	 * @see ProcedureResultCache
+	 */
+	public Procedure cache(long ttl, TimeUnit unit) {
+		Validator.GET.notNull(unit).greaterThanZero(ttl);
+		this.cacheTtlNanos = unit.toNanos(ttl);
+		return this;
 	}
 
-	private static Map<String, Boolean> registerParameters(String query) {
-		final Scanner scanner = new Scanner(query);
-		final Map<String, Boolean> registeredParameters = Maps.newHashMap();
+	/**
+	 * Chamadas concorrentes desta procedure com a mesma assinatura e os mesmos
+	 * valores de entrada passam a compartilhar uma única execução no banco,
+	 * cujo resultado é entregue a todas. Deve ser usado apenas em procedures
+	 * somente leitura; procedures com cursores de saída são sempre executadas
+	 * individualmente.
+	 */
+	public Procedure singleFlight() {
+		this.singleFlight = true;
+		return this;
+	}
 
-		String param = nextParameterName(scanner);
-		while (param != null) {
-			registeredParameters.put(param, false);
-			param = nextParameterName(scanner);
-		}
+	/**
+	 * Quantidade de linhas trazidas do banco a cada ida ao servidor, tanto do
+	 * result set quanto dos cursores de saída.
+	 * 
+	 * @see ProcedureDefaults
+	 */
+	public Procedure fetchSize(int fetchSize) {
+		Validator.GET.greaterOrEqualsZero(fetchSize);
+		this.fetchSize = fetchSize;
+		return this;
+	}
 
-		return registeredParameters;
+	/**
+	 * Limite de linhas do result set; 0 não limita.
+	 * 
+	 * @see ProcedureDefaults
+	 */
+	public Procedure maxRows(int maxRows) {
+		Validator.GET.greaterOrEqualsZero(maxRows);
+		this.maxRows = maxRows;
+		return this;
 	}
 
-	private static Map<String, Integer> registerParametersOrder(String query) {
-		final Scanner scanner = new Scanner(query);
-		final Map<String, Integer> parametersOrder = new LinkedHashMap<String, Integer>();
-		int order = 1;
+	/**
+	 * Tempo máximo de execução, arredondado para cima em segundos; 0 não
+	 * limita.
+	 * 
+	 * @see ProcedureDefaults
+	 */
+	public Procedure timeout(long timeout, TimeUnit unit) {
+		this.timeoutSeconds = ProcedureDefaults.toSeconds(timeout, unit);
+		return this;
+	}
 
-		String param = nextParameterName(scanner);
-		while (param != null) {
-			parametersOrder.put(param, order);
-			param = nextParameterName(scanner);
-			order++;
-		}
+	/**
+	 * Define o valor de um parâmetro de entrada. Coleções são associadas como
+	 * array com o tipo inferido dos elementos; para tipos coleção nomeados
+	 * (Oracle) ou table-valued parameters (SQL Server), use
+	 * {@link SqlArray#of(String, java.util.Collection)}. A coleção é copiada.
+	 */
+	public Procedure input(String input, Object value) {
+		Validator.GET.notNull(input);
+		final int index = parameterIndex(input);
 
-		return parametersOrder;
+		inputs[index] = SqlArray.valueOf(value);
+		inputSet[index] = true;
+		return this;
 	}
 
-	private static String nextParameterName(Scanner scanner) {
-		final String paramPattern = ":\\w+";
-		final String param = scanner.findInLine(paramPattern);
-		return param == null ? null : param.substring(1);
+	/**
+	 * Mapeia os result sets retornados pela procedure, na ordem, para as
+	 * classes informadas, substituindo a classe informada na criação. Todos
+	 * são lidos na mesma execução, percorrendo também as contagens de
+	 * atualização intercaladas (veja {@link ProcedureResult#getUpdateCounts()}
+	 * ). Classes nulas e result sets excedentes são descartados.
+	 * 
+	 * @see ProcedureResult#getResultSet(int)
+	 */
+	public Procedure resultSets(Class<?>... classes) {
+		Validator.GET.notNull((Object) classes);
+		resultSets.clear();
+		for (Class<?> clazz : classes) {
+			resultSets.add(clazz == null ? null : ResultSetMapping.of(clazz, null));
+		}
+		return this;
 	}
 
-	public Procedure input(String input, Object value) {
-		Validator.GET.notNull(input);
-		parameterExists(input);
+	/**
+	 * Entrega ao handler cada linha mapeada do result set da posição
+	 * informada, sem montar a lista em memória. Procedures com handlers não
+	 * são armazenadas em cache.
+	 * 
+	 * @param index
+	 *            - posição do result set, a partir de 0
+	 * @see #resultSets(Class...)
+	 */
+	public <T> Procedure resultSet(int index, Class<T> clazz, RowHandler<? super T> handler) {
+		Validator.GET.notNull(clazz, handler).greaterOrEqualsZero(index);
+		while (resultSets.size() <= index) {
+			resultSets.add(null);
+		}
+		resultSets.set(index, ResultSetMapping.of(clazz, handler));
+		return this;
+	}
 
-		inputs.put(input, value);
-		registeredParameters.put(input, true);
+	/**
+	 * Lê o result set por colunas, em arrays primitivos, no lugar da classe
+	 * informada na criação; indicado para procedures analíticas com muitas
+	 * linhas. Não se aplica a {@link #resultSets(Class...)}.
+	 * 
+	 * @see ProcedureResult#getColumnarResult()
+	 */
+	public Procedure columnar() {
+		this.columnar = true;
 		return this;
 	}
 
+	/**
+	 * @throws IllegalArgumentException
+	 *             se o parâmetro não existir ou o banco não retornar cursores
+	 *             como parâmetros de saída ({@link SqlType#CURSOR})
+	 */
 	public Procedure output(String output, SqlType type) {
 		Validator.GET.notNull(output, type);
-		parameterExists(output);
+		final int index = parameterIndex(output);
+		if (type == SqlType.CURSOR) {
+			final ProcedureDialect dialect = ProcedureDialect.of(session);
+			if (!dialect.supportsCursorOutput()) {
+				throw new IllegalArgumentException(String.format(
+						"%s does not return cursors as output parameters (%s); map the procedure result set instead.",
+						dialect, output));
+			}
+		}
 
-		outputs.put(output, type);
-		registeredParameters.put(output, true);
+		outputs[index] = type;
 		return this;
 	}
 
-	private void parameterExists(String parameter) {
-		if (registeredParameters.get(parameter) == null) {
+	private int parameterIndex(String parameter) {
+		final int index = template.indexOf(parameter);
+		if (index < 0) {
 			throw new IllegalArgumentException(String.format("Parameter %s does not exist.", parameter));
 		}
+		return index;
 	}
 
 	public ProcedureResult execute() {
 		checkIfAllParametersHaveBeenSet();
 
-		ProcedureWork work = new ProcedureWork();
+		if (!shared()) {
+			return run();
+		}
+		return shared(new Callable<ProcedureResult>() {
+			@Override
+			public ProcedureResult call() {
+				return run();
+			}
+		});
+	}
+
+	/**
+	 * @return se a execução passa pelo cache de resultados ou é compartilhada
+	 *         entre chamadas concorrentes
+	 */
+	private boolean shared() {
+		return (cacheTtlNanos > 0 || singleFlight) && !hasLocatorOutput() && !hasResultSetHandler();
+	}
+
+	/**
+	 * Consulta o cache e executa, compartilhando a execução se configurado.
+	 */
+	private ProcedureResult shared(final Callable<ProcedureResult> run) {
+		final ProcedureKey key = new ProcedureKey(session.getSessionFactory(), template, inputs, outputs,
+				resultSetClasses(), maxRows);
+		if (cacheTtlNanos > 0) {
+			final ProcedureResult cached = ProcedureResultCache.getDefault().get(key);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		if (!singleFlight) {
+			return runAndCache(key, run);
+		}
+		return SingleFlight.execute(key, new Callable<ProcedureResult>() {
+			@Override
+			public ProcedureResult call() {
+				return runAndCache(key, run);
+			}
+		});
+	}
+
+	private ProcedureResult run() {
+		ProcedureWork work = new ProcedureWork(null, true);
+		session.doWork(work);
+		return work.getResult();
+	}
+
+	private ProcedureResult runAndCache(ProcedureKey key, Callable<ProcedureResult> run) {
+		final ProcedureResult result;
+		try {
+			result = run.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new CannotInvokeProcedureException("Error while executing procedure. " + e.getMessage(), e);
+		}
+		// Como nas leituras do cache, o chamador recebe listas próprias e imutáveis
+		if (cacheTtlNanos > 0 && ProcedureResultCache.getDefault().put(key, result, cacheTtlNanos)) {
+			return result.copy();
+		}
+		return result;
+	}
+
+	/**
+	 * Executa a procedure entregando ao handler cada linha do result set,
+	 * mapeada enquanto o cursor está aberto, sem montar a lista em memória.
+	 * 
+	 * @param clazz
+	 *            - classe do result set
+	 * @param handler
+	 *            - recebe cada objeto mapeado
+	 * @return resultado com os parâmetros de saída
+	 */
+	public <T> ProcedureResult execute(final Class<T> clazz, final RowHandler<? super T> handler) {
+		Validator.GET.notNull(clazz, handler);
+		checkIfAllParametersHaveBeenSet();
+
+		ProcedureWork work = new ProcedureWork(new ResultSetHandler() {
+			@Override
+			public int handle(ResultSet rs) {
+				return ResultSetMapper.mapResultSet(rs, clazz, handler);
+			}
+		}, true);
 		session.doWork(work);
 		return work.getResult();
 	}
 
+	/**
+	 * Executa a procedure no executor padrão.
+	 * 
+	 * @see #executeAsync(ExecutorService)
+	 */
+	public Future<ProcedureResult> executeAsync() {
+		return executeAsync(ProcedureExecutors.getDefault());
+	}
+
+	/**
+	 * Executa a procedure em outra thread, com uma conexão própria obtida do
+	 * connection provider da SessionFactory. A execução não participa da
+	 * transação da sessão: sem auto-commit, a conexão é confirmada ao final
+	 * (ou, havendo cursores ou LOBs de saída, ao fechar o resultado).
+	 * 
+	 * <p>
+	 * Os parâmetros são copiados no momento da chamada. Cancelar o futuro com
+	 * interrupção cancela o statement em execução; um resultado concluído mas
+	 * não entregue por causa do cancelamento é fechado.
+	 * </p>
+	 * 
+	 * <p>
+	 * O cache de resultados e o single-flight valem também aqui. A execução
+	 * compartilhada com outras chamadas não é interrompida pelo cancelamento
+	 * de um dos futuros, que apenas deixa de receber o resultado.
+	 * </p>
+	 * 
+	 * @param executor
+	 *            - executor da procedure
+	 * @return resultado futuro
+	 * @see ProcedureExecutors
+	 */
+	public Future<ProcedureResult> executeAsync(ExecutorService executor) {
+		return submit(executor, null);
+	}
+
+	/**
+	 * @param completion
+	 *            - recebe o futuro ao término da execução; pode ser nulo
+	 */
+	ProcedureFuture submit(ExecutorService executor, Queue<? super ProcedureFuture> completion) {
+		Validator.GET.notNull(executor);
+		checkIfAllParametersHaveBeenSet();
+
+		final AsyncExecution execution = copy().new AsyncExecution(connectionProvider(session), completion);
+		executor.execute(execution.future);
+		return execution.future;
+	}
+
+	private static ConnectionProvider connectionProvider(Session session) {
+		if (!(session.getSessionFactory() instanceof SessionFactoryImplementor)) {
+			throw new IllegalArgumentException(String.format("Session factory %s does not expose its connection provider.",
+					session.getSessionFactory()));
+		}
+		return ((SessionFactoryImplementor) session.getSessionFactory()).getConnectionProvider();
+	}
+
+	/**
+	 * Cópia dos parâmetros atuais, para que a execução assíncrona não seja
+	 * afetada por alterações posteriores.
+	 */
+	private Procedure copy() {
+		final Procedure copy = new Procedure(session, template, resultSetClazz);
+		System.arraycopy(inputs, 0, copy.inputs, 0, inputs.length);
+		System.arraycopy(inputSet, 0, copy.inputSet, 0, inputSet.length);
+		System.arraycopy(outputs, 0, copy.outputs, 0, outputs.length);
+		copy.cacheTtlNanos = cacheTtlNanos;
+		copy.singleFlight = singleFlight;
+		copy.fetchSize = fetchSize;
+		copy.maxRows = maxRows;
+		copy.timeoutSeconds = timeoutSeconds;
+		copy.resultSets.addAll(resultSets);
+		copy.columnar = columnar;
+		return copy;
+	}
+
 	private void checkIfAllParametersHaveBeenSet() {
 		final Set<String> unregisteredParams = Sets.newHashSet();
-		for (Entry<String, Boolean> entry : registeredParameters.entrySet()) {
-			if (!entry.getValue()) {
-				unregisteredParams.add(entry.getKey());
+		for (int i = 0; i < inputSet.length; i++) {
+			if (!inputSet[i] && outputs[i] == null) {
+				unregisteredParams.add(template.parameterName(i));
 			}
 		}
 		if (unregisteredParams.size() > 0) {
@@ -182,9 +457,262 @@ public final class Procedure {
 		}
 	}
 
+	/**
+	 * Associa o valor às posições de um parâmetro de entrada; {@link SqlArray}
+	 * é associado pelo dialeto.
+	 */
+	static void bind(ProcedureDialect dialect, Connection connection, CallableStatement statement, int[] ordinals,
+			Object value) throws SQLException {
+		if (value instanceof SqlArray) {
+			for (int ordinal : ordinals) {
+				dialect.bindArray(connection, statement, ordinal, (SqlArray) value);
+			}
+			return;
+		}
+		final int type = intType(dialect, value);
+		for (int ordinal : ordinals) {
+			statement.setObject(ordinal, value, type);
+		}
+	}
+
+	/**
+	 * Tipo SQL usado para associar o valor a um parâmetro de entrada.
+	 */
+	static int intType(ProcedureDialect dialect, Object parameter) {
+		if (parameter == null) {
+			return dialect.nullType();
+		}
+		return SqlType.fromType(parameter.getClass()).sqlType();
+	}
+
+	private boolean hasResultSetHandler() {
+		for (ResultSetMapping<?> mapping : resultSets) {
+			if (mapping != null && mapping.handler != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return classes dos result sets mapeados, na ordem
+	 */
+	private Class<?>[] resultSetClasses() {
+		if (resultSets.isEmpty()) {
+			return new Class<?>[] { columnar ? ColumnarResult.class : resultSetClazz };
+		}
+		final Class<?>[] classes = new Class<?>[resultSets.size()];
+		for (int i = 0; i < classes.length; i++) {
+			classes[i] = resultSets.get(i) == null ? null : resultSets.get(i).clazz;
+		}
+		return classes;
+	}
+
+	/**
+	 * @return se algum parâmetro de saída é um cursor ou LOB, que dependem do
+	 *         statement e da conexão para serem lidos
+	 */
+	private boolean hasLocatorOutput() {
+		for (SqlType output : outputs) {
+			if (output != null && (output.isCursor() || output.isLob())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean hasCursorOutput() {
+		for (SqlType output : outputs) {
+			if (output != null && output.isCursor()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Classe e, opcionalmente, handler de um dos result sets da procedure.
+	 */
+	static final class ResultSetMapping<T> {
+
+		final Class<T> clazz;
+
+		final RowHandler<? super T> handler;
+
+		private ResultSetMapping(Class<T> clazz, RowHandler<? super T> handler) {
+			this.clazz = clazz;
+			this.handler = handler;
+		}
+
+		static <T> ResultSetMapping<T> of(Class<T> clazz, RowHandler<? super T> handler) {
+			return new ResultSetMapping<T>(clazz, handler);
+		}
+
+		/**
+		 * Mapeia o result set, registrando a lista no resultado (nula quando
+		 * entregue ao handler).
+		 * 
+		 * @see ResultSetMapper#mapResultSet(ResultSet, Class, int, long)
+		 * @return quantidade de linhas mapeadas
+		 */
+		int map(ResultSet rs, ProcedureResult result, int spillRows, long spillBytes) {
+			if (handler != null) {
+				result.addResultSet(null);
+				return ResultSetMapper.mapResultSet(rs, clazz, handler);
+			}
+			final List<T> list = ResultSetMapper.mapResultSet(rs, clazz, spillRows, spillBytes);
+			result.addResultSet(list);
+			return list.size();
+		}
+	}
+
+	/**
+	 * Trata o result set retornado pela execução.
+	 */
+	private interface ResultSetHandler {
+		/**
+		 * @return quantidade de linhas mapeadas
+		 */
+		int handle(ResultSet rs);
+	}
+
+	/**
+	 * Execução em conexão própria, devolvida ao connection provider ao final
+	 * ou, havendo cursores ou LOBs de saída, ao fechar o resultado.
+	 */
+	private class AsyncExecution implements Callable<ProcedureResult> {
+
+		final ConnectionProvider provider;
+
+		final ProcedureFuture future;
+
+		AsyncExecution(ConnectionProvider provider, Queue<? super ProcedureFuture> completion) {
+			this.provider = provider;
+			this.future = new ProcedureFuture(this, completion);
+		}
+
+		@Override
+		public ProcedureResult call() throws SQLException {
+			final ProcedureResult result;
+			if (shared()) {
+				result = shared(new Callable<ProcedureResult>() {
+					@Override
+					public ProcedureResult call() throws SQLException {
+						return execute(false);
+					}
+				});
+			} else {
+				result = execute(true);
+			}
+			future.produced(result);
+			return result;
+		}
+
+		/**
+		 * @param cancellable
+		 *            - se o cancelamento do futuro interrompe a execução; não
+		 *            vale para execuções compartilhadas
+		 */
+		private ProcedureResult execute(final boolean cancellable) throws SQLException {
+			final Connection connection = provider.getConnection();
+			boolean released = true;
+			try {
+				final ProcedureWork work = new ProcedureWork(null, false) {
+					@Override
+					void prepared(CallableStatement call) {
+						if (cancellable) {
+							future.running(call);
+						}
+					}
+				};
+				work.execute(connection);
+
+				final ProcedureResult result = work.getResult();
+				if (cancellable && future.isCancelled()) {
+					result.close();
+					rollback(connection);
+				} else if (result.holdsStatement()) {
+					result.releaseOnClose(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								commit(connection);
+							} catch (SQLException e) {
+								throw new CannotInvokeProcedureException("Error while committing procedure execution. "
+										+ e.getMessage(), e);
+							} finally {
+								release(connection);
+							}
+						}
+					});
+					released = false;
+				} else {
+					commit(connection);
+				}
+				return result;
+			} catch (SQLException e) {
+				rollback(connection);
+				throw e;
+			} catch (RuntimeException e) {
+				rollback(connection);
+				throw e;
+			} finally {
+				if (cancellable) {
+					future.finished();
+				}
+				if (released) {
+					release(connection);
+				}
+			}
+		}
+
+		private void commit(Connection connection) throws SQLException {
+			if (!connection.getAutoCommit()) {
+				connection.commit();
+			}
+		}
+
+		private void rollback(Connection connection) {
+			try {
+				if (!connection.getAutoCommit()) {
+					connection.rollback();
+				}
+			} catch (SQLException e) {
+				log.warn("Error while rolling back procedure execution. " + e.getMessage(), e);
+			}
+		}
+
+		private void release(Connection connection) {
+			try {
+				provider.closeConnection(connection);
+			} catch (SQLException e) {
+				log.warn("Error while releasing procedure connection. " + e.getMessage(), e);
+			}
+		}
+	}
+
 	private class ProcedureWork implements Work {
 
-		final ProcedureResult result = new ProcedureResult();
+		final ProcedureResult result = new ProcedureResult(template);
+
+		final ResultSetHandler handler;
+
+		/** Se o statement pode vir do cache da conexão. */
+		final boolean cacheable;
+
+		final ProcedureDialect dialect = ProcedureDialect.of(session);
+
+		ProcedureWork(ResultSetHandler handler, boolean cacheable) {
+			this.handler = handler;
+			this.cacheable = cacheable;
+		}
+
+		/**
+		 * Chamado com o statement preparado, antes da associação dos
+		 * parâmetros.
+		 */
+		void prepared(CallableStatement call) {
+		}
 
 		public ProcedureResult getResult() {
 			return result;
@@ -192,57 +720,218 @@ public final class Procedure {
 
 		@Override
 		public void execute(Connection connection) throws SQLException {
-			final CallableStatement call = connection.prepareCall(query);
-			withParameters(call).execute();
+			final ProcedureMetrics metrics = Procedure.metrics;
+			final boolean timed = metrics != ProcedureMetrics.NOOP;
+			final String name = template.getName();
+			final String query = template.getQuery();
+			long start = timed ? System.nanoTime() : 0L;
+
+			// Cursores e LOBs de saída continuam abertos após a execução,
+			// portanto o statement pertence ao resultado e não pode ser
+			// reaproveitado
+			final StatementCache cache = hasLocatorOutput() || !cacheable ? null : StatementCache.of(connection);
+			final CallableStatement call;
+			try {
+				dialect.configure(connection);
+				call = cache == null ? connection.prepareCall(query) : cache.checkout(query);
+			} catch (SQLException e) {
+				metrics.error(name, e);
+				throw e;
+			}
+			start = timed ? lap(metrics, name, Phase.PREPARE, start) : 0L;
+			prepared(call);
+			final int adaptiveFetchSize = fetchSize >= 0 ? -1 : adaptiveFetchSize(metrics);
+			final int cursorFetchSize = fetchSize >= 0 ? fetchSize : adaptiveFetchSize > 0 ? adaptiveFetchSize
+					: ProcedureDefaults.getCursorFetchSize();
+
+			boolean succeeded = false;
+			try {
+				withOptions(call, adaptiveFetchSize);
+				if (cursorFetchSize > 0 && hasCursorOutput()) {
+					dialect.cursorFetchSize(call, cursorFetchSize);
+				}
+				withParameters(connection, call);
+				start = timed ? lap(metrics, name, Phase.BIND, start) : 0L;
+
+				final boolean isResultSet = call.execute();
+				start = timed ? lap(metrics, name, Phase.EXECUTE, start) : 0L;
+
+				if (handler == null && !resultSets.isEmpty()) {
+					readResults(call, isResultSet, metrics, name);
+					start = timed ? lap(metrics, name, Phase.MAP_RESULT_SET, start) : 0L;
+				} else if (handler != null || resultSetClazz != null || columnar) {
+					final ResultSet rs = call.getResultSet();
+					final boolean adaptive = ProcedureDefaults.getFetchBudget() > 0;
+					final int width = (timed || adaptive) && rs != null ? ResultSetMapper.estimateRowWidth(rs
+							.getMetaData()) : 0;
+					final int rows;
+					if (handler != null) {
+						rows = handler.handle(rs);
+					} else if (columnar) {
+						final ColumnarResult columns = ResultSetMapper.mapColumnar(rs);
+						result.setColumnarResult(columns);
+						rows = columns == null ? 0 : columns.getRowCount();
+					} else {
+						final List<?> list = ResultSetMapper.mapResultSet(rs, resultSetClazz, spillRows(),
+								spillBytes());
+						result.setResultSet(list);
+						rows = list == null ? 0 : list.size();
+					}
+					if (adaptive && rs != null) {
+						template.fetchAdvisor().observe(rows, width);
+					}
+					if (timed) {
+						start = lap(metrics, name, Phase.MAP_RESULT_SET, start);
+						metrics.rowsMapped(name, rows, (long) rows * width);
+					}
+				}
 
-			if (resultSetClazz != null) {
-				result.setResultSet(ResultSetMapper.mapResultSet(call.getResultSet(), resultSetClazz));
+				for (int i = 0; i < outputs.length; i++) {
+					if (outputs[i] != null) {
+						final Object value = call.getObject(template.ordinal(i));
+						if (value instanceof ResultSet && cursorFetchSize > 0) {
+							// O cursor não herda o fetch size do statement
+							((ResultSet) value).setFetchSize(cursorFetchSize);
+						}
+						result.register(template.parameterName(i), value);
+					}
+				}
+				if (timed) {
+					lap(metrics, name, Phase.FETCH_OUTPUTS, start);
+				}
+				succeeded = true;
+			} catch (SQLException e) {
+				metrics.error(name, e);
+				result.close();
+				throw e;
+			} catch (RuntimeException e) {
+				metrics.error(name, e);
+				result.close();
+				throw e;
+			} finally {
+				if (cache != null && succeeded) {
+					cache.checkin(query, call);
+				} else if (succeeded && hasLocatorOutput()) {
+					result.setStatement(call);
+				} else {
+					StatementCache.closeQuietly(call);
+				}
 			}
+		}
 
-			for (final Entry<String, SqlType> entry : outputs.entrySet()) {
-				result.register(entry.getKey(), call.getObject(parametersOrder.get(entry.getKey())));
+		/**
+		 * Percorre os resultados da execução, mapeando cada result set com o
+		 * mapeamento da sua posição e registrando as contagens de atualização.
+		 * Os parâmetros de saída só ficam disponíveis após a leitura de todos
+		 * os resultados, portanto os result sets excedentes também são
+		 * percorridos.
+		 */
+		private void readResults(CallableStatement call, boolean isResultSet, ProcedureMetrics metrics, String name)
+				throws SQLException {
+			final boolean timed = metrics != ProcedureMetrics.NOOP;
+			final boolean adaptive = ProcedureDefaults.getFetchBudget() > 0;
+			long rows = 0;
+			int width = 0;
+			for (int index = 0;; isResultSet = call.getMoreResults()) {
+				if (isResultSet) {
+					final ResultSet rs = call.getResultSet();
+					final ResultSetMapping<?> mapping = index < resultSets.size() ? resultSets.get(index) : null;
+					if (mapping == null) {
+						result.addResultSet(null);
+					} else {
+						final int setWidth = timed || adaptive ? ResultSetMapper.estimateRowWidth(rs.getMetaData())
+								: 0;
+						final int mapped = mapping.map(rs, result, spillRows(), spillBytes());
+						rows += mapped;
+						width = Math.max(width, setWidth);
+						if (timed) {
+							metrics.rowsMapped(name, mapped, (long) mapped * setWidth);
+						}
+					}
+					index++;
+				} else {
+					final int count = call.getUpdateCount();
+					if (count == -1) {
+						break;
+					}
+					result.addUpdateCount(count);
+				}
+			}
+			if (adaptive && rows > 0) {
+				template.fetchAdvisor().observe((int) Math.min(rows, Integer.MAX_VALUE), width);
 			}
 		}
 
-		private CallableStatement withParameters(CallableStatement statement) throws SQLException {
-			withInput(statement).withOutput(statement);
-			return statement;
+		/**
+		 * Linhas mantidas em memória; resultados compartilhados pelo cache ou
+		 * por single-flight não são gravados em arquivo.
+		 */
+		private int spillRows() {
+			return cacheTtlNanos > 0 || singleFlight ? 0 : ProcedureDefaults.getSpillRows();
 		}
 
-		private ProcedureWork withInput(CallableStatement statement) throws SQLException {
-			for (final Entry<String, Object> entry : inputs.entrySet()) {
-				statement.setObject(parametersOrder.get(entry.getKey()), entry.getValue(), intType(entry.getValue()));
-			}
-			return this;
+		private long spillBytes() {
+			return cacheTtlNanos > 0 || singleFlight ? 0L : ProcedureDefaults.getSpillBytes();
+		}
+
+		/**
+		 * Registra a duração da fase iniciada em start e retorna o início da
+		 * próxima.
+		 */
+		private long lap(ProcedureMetrics metrics, String name, Phase phase, long start) {
+			final long now = System.nanoTime();
+			metrics.phase(name, phase, now - start);
+			return now;
 		}
 
-		private int intType(Object parameter) {
-			if (parameter == null) {
-				return inferNullType();
+		/**
+		 * Fetch size aprendido das execuções anteriores desta assinatura, ou -1
+		 * sem orçamento ou amostras.
+		 */
+		private int adaptiveFetchSize(ProcedureMetrics metrics) {
+			final FetchSizeAdvisor advisor = template.fetchAdvisor();
+			final int adaptive = advisor.fetchSize(ProcedureDefaults.getFetchBudget());
+			if (adaptive > 0) {
+				metrics.fetchSize(template.getName(), adaptive, advisor.expectedRows(), advisor.rowWidth());
 			}
-			return SqlType.fromType(parameter.getClass()).sqlType();
+			return adaptive;
 		}
 
-		private int inferNullType() {
-			try {
-				if ((session instanceof SessionImpl)) {
-					final String dialect = ((SessionImpl) session).getFactory().getDialect().toString();
-					if (dialect.matches(".*Oracle.*")) {
-						// Database compatibility: Oracle demands to use
-						// SqlType.NULL for null parameters
-						return Types.NULL;
-					}
+		/**
+		 * Aplica fetch size, max rows e timeout. Os valores são sempre
+		 * definidos, pois o statement pode vir do cache com os valores de
+		 * outra execução.
+		 */
+		private void withOptions(CallableStatement statement, int adaptiveFetchSize) throws SQLException {
+			statement.setFetchSize(fetchSize >= 0 ? fetchSize : adaptiveFetchSize > 0 ? adaptiveFetchSize
+					: ProcedureDefaults.getFetchSize());
+			statement.setMaxRows(maxRows >= 0 ? maxRows : ProcedureDefaults.getMaxRows());
+			statement.setQueryTimeout(timeoutSeconds >= 0 ? timeoutSeconds : ProcedureDefaults.getTimeoutSeconds());
+		}
+
+		private CallableStatement withParameters(Connection connection, CallableStatement statement)
+				throws SQLException {
+			withInput(connection, statement).withOutput(statement);
+			return statement;
+		}
+
+		private ProcedureWork withInput(Connection connection, CallableStatement statement) throws SQLException {
+			for (int i = 0; i < inputs.length; i++) {
+				if (inputSet[i]) {
+					bind(dialect, connection, statement, template.ordinals(i), inputs[i]);
 				}
-				return Types.OTHER;
-			} catch (Exception e) {
-				log.error("Error while retrieving hibernate dialect. " + e.getMessage(), e);
-				return Types.OTHER;
 			}
+			return this;
 		}
 
 		private ProcedureWork withOutput(CallableStatement statement) throws SQLException {
-			for (final Entry<String, SqlType> entry : outputs.entrySet()) {
-				statement.registerOutParameter(parametersOrder.get(entry.getKey()), entry.getValue().sqlType());
+			for (int i = 0; i < outputs.length; i++) {
+				if (outputs[i] != null) {
+					final int type = outputs[i] == SqlType.CURSOR ? dialect.cursorType() : outputs[i].sqlType();
+					for (int ordinal : template.ordinals(i)) {
+						statement.registerOutParameter(ordinal, type);
+					}
+				}
 			}
 			return this;
 		}
@@ -250,20 +939,18 @@ public final class Procedure {
 
 	@Override
 	public String toString() {
-		return String.format("JdbcQuery:  %s\n%s", query, printParameters());
+		return String.format("JdbcQuery:  %s\n%s", template.getQuery(), printParameters());
 	}
 
 	private String printParameters() {
 		StringBuilder params = new StringBuilder();
-		for (Entry<String, Integer> entry : parametersOrder.entrySet()) {
-
-			String key = entry.getKey();
+		for (int i = 0; i < template.parameterCount(); i++) {
 
-			params.append("Parameter ").append(entry.getValue()).append(": ").append(key);
+			params.append("Parameter ").append(template.ordinal(i)).append(": ").append(template.parameterName(i));
 
-			if (this.inputs.containsKey(key)) {
+			if (this.inputSet[i]) {
 				// Appending the value passed to procedure
-				params.append(String.format(" [%s]", this.inputs.get(key)));
+				params.append(String.format(" [%s]", this.inputs[i]));
 			}
 
 			params.append("\n");
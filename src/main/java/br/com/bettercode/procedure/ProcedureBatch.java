@@ -0,0 +1,216 @@
+package br.com.bettercode.procedure;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+/**
+ * Execução em lote de procedures que possuem apenas parâmetros de entrada.
+ * As linhas são acumuladas e enviadas com addBatch/executeBatch em um único
+ * {@link CallableStatement} sempre que o tamanho do lote é atingido.
+ *
+ * <pre>
+ * ProcedureBatch batch = ProcedureBatch.create(session, &quot;sp_log(:a,:b,:c)&quot;);
+ * for (Log log : logs) {
+ * 	batch.input(&quot;a&quot;, log.getA()).input(&quot;b&quot;, log.getB()).input(&quot;c&quot;, log.getC()).addBatch();
+ * }
+ * int[] updateCounts = batch.execute();
+ * </pre>
+ */
+public final class ProcedureBatch {
+
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	private final Session session;
+	private final ProcedureTemplate template;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	private Object[] row;
+	private boolean[] rowSet;
+	private final List<Object[]> rows = Lists.newArrayList();
+
+	private int[] updateCounts = new int[16];
+	private int executedRows = 0;
+
+	private ProcedureBatch(Session session, ProcedureTemplate template) {
+		this.session = session;
+		this.template = template;
+		this.row = new Object[template.parameterCount()];
+		this.rowSet = new boolean[template.parameterCount()];
+	}
+
+	static ProcedureBatch create(Session session, ProcedureTemplate template) {
+		Validator.GET.notNull(session, template);
+		if (template.isFunction()) {
+			throw new IllegalArgumentException(String.format(
+					"Function [%s] has a return parameter and cannot be executed in batch.", template.getSignature()));
+		}
+		return new ProcedureBatch(session, template);
+	}
+
+	public static ProcedureBatch create(Session session, String procedure) {
+		Validator.GET.notNull(session, procedure).notEmpty(procedure);
+		return create(session, ProcedureTemplate.compile(procedure));
+	}
+
+	/**
+	 * Quantidade de linhas enviadas a cada executeBatch.
+	 */
+	public ProcedureBatch batchSize(int batchSize) {
+		Validator.GET.greaterThanZero(batchSize);
+		this.batchSize = batchSize;
+		return this;
+	}
+
+	public ProcedureBatch input(String input, Object value) {
+		Validator.GET.notNull(input);
+		final int index = template.indexOf(input);
+		if (index < 0) {
+			throw new IllegalArgumentException(String.format("Parameter %s does not exist.", input));
+		}
+
+		row[index] = SqlArray.valueOf(value);
+		rowSet[index] = true;
+		return this;
+	}
+
+	/**
+	 * Adiciona ao lote a linha montada com {@link #input(String, Object)}.
+	 */
+	public ProcedureBatch addBatch() {
+		checkIfAllParametersHaveBeenSet();
+
+		rows.add(row);
+		row = new Object[template.parameterCount()];
+		Arrays.fill(rowSet, false);
+
+		if (rows.size() >= batchSize) {
+			flush();
+		}
+		return this;
+	}
+
+	/**
+	 * Adiciona ao lote uma linha com os valores na ordem dos parâmetros da
+	 * assinatura.
+	 */
+	public ProcedureBatch add(Object... values) {
+		Validator.GET.notNull(values);
+		if (values.length != template.parameterCount()) {
+			throw new IllegalArgumentException(String.format("Procedure [%s] expects %d values but got %d.",
+					template.getSignature(), template.parameterCount(), values.length));
+		}
+		for (int i = 0; i < values.length; i++) {
+			row[i] = SqlArray.valueOf(values[i]);
+		}
+		Arrays.fill(rowSet, true);
+		return addBatch();
+	}
+
+	private void checkIfAllParametersHaveBeenSet() {
+		final Set<String> unregisteredParams = Sets.newHashSet();
+		for (int i = 0; i < rowSet.length; i++) {
+			if (!rowSet[i]) {
+				unregisteredParams.add(template.parameterName(i));
+			}
+		}
+		if (unregisteredParams.size() > 0) {
+			throw new UnsetedArgumentsException(unregisteredParams.toArray(new String[unregisteredParams.size()]));
+		}
+	}
+
+	/**
+	 * Envia ao banco as linhas pendentes.
+	 */
+	public ProcedureBatch flush() {
+		if (!rows.isEmpty()) {
+			try {
+				session.doWork(new BatchWork());
+			} finally {
+				rows.clear();
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Envia as linhas pendentes e retorna o update count de cada linha
+	 * executada desde a última chamada, na ordem em que foram adicionadas.
+	 */
+	public int[] execute() {
+		flush();
+		final int[] result = Arrays.copyOf(updateCounts, executedRows);
+		executedRows = 0;
+		return result;
+	}
+
+	/**
+	 * @return linhas adicionadas e ainda não enviadas
+	 */
+	public int getPendingRows() {
+		return rows.size();
+	}
+
+	private void registerUpdateCounts(int[] counts) {
+		if (executedRows + counts.length > updateCounts.length) {
+			updateCounts = Arrays.copyOf(updateCounts, Math.max(updateCounts.length * 2, executedRows + counts.length));
+		}
+		System.arraycopy(counts, 0, updateCounts, executedRows, counts.length);
+		executedRows += counts.length;
+	}
+
+	private class BatchWork implements Work {
+
+		@Override
+		public void execute(Connection connection) throws SQLException {
+			final String query = template.getQuery();
+			final ProcedureDialect dialect = ProcedureDialect.of(session);
+			final StatementCache cache = StatementCache.of(connection);
+			dialect.configure(connection);
+			final CallableStatement call = cache == null ? connection.prepareCall(query) : cache.checkout(query);
+
+			boolean succeeded = false;
+			try {
+				withDefaults(call);
+				for (Object[] values : rows) {
+					for (int i = 0; i < values.length; i++) {
+						Procedure.bind(dialect, connection, call, template.ordinals(i), values[i]);
+					}
+					call.addBatch();
+				}
+				registerUpdateCounts(call.executeBatch());
+				succeeded = true;
+			} finally {
+				if (cache != null && succeeded) {
+					cache.checkin(query, call);
+				} else {
+					StatementCache.closeQuietly(call);
+				}
+			}
+		}
+
+		/**
+		 * Aplica fetch size, max rows e timeout padrão. O statement pode vir do
+		 * cache com os valores de uma execução de {@link Procedure}.
+		 */
+		private void withDefaults(CallableStatement statement) throws SQLException {
+			statement.setFetchSize(ProcedureDefaults.getFetchSize());
+			statement.setMaxRows(ProcedureDefaults.getMaxRows());
+			statement.setQueryTimeout(ProcedureDefaults.getTimeoutSeconds());
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("JdbcQuery:  %s\nPending rows: %d", template.getQuery(), rows.size());
+	}
+}
@@ -0,0 +1,172 @@
+package br.com.bettercode.procedure;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Valores padrão de fetch size, max rows e timeout, usados pelas procedures
+ * que não os definem explicitamente (veja {@link Procedure#fetchSize(int)},
+ * {@link Procedure#maxRows(int)} e {@link Procedure#timeout(long, TimeUnit)}).
+ *
+ * <p>
+ * Os valores iniciais vêm das propriedades de sistema
+ * {@value #FETCH_SIZE_PROPERTY}, {@value #CURSOR_FETCH_SIZE_PROPERTY},
+ * {@value #MAX_ROWS_PROPERTY} e {@value #TIMEOUT_PROPERTY} (em segundos). Em
+ * todos, 0 mantém o comportamento do driver.
+ * </p>
+ *
+ * <p>
+ * Com um orçamento em bytes por ida ao servidor
+ * ({@value #FETCH_BUDGET_PROPERTY}, 0 desabilita), procedures sem fetch size
+ * explícito usam o fetch size aprendido das execuções anteriores da mesma
+ * assinatura: uma única ida ao servidor para consultas pequenas e lotes
+ * limitados pelo orçamento para as grandes.
+ * </p>
+ *
+ * <p>
+ * Result sets que excedem {@value #SPILL_ROWS_PROPERTY} linhas ou
+ * {@value #SPILL_BYTES_PROPERTY} bytes estimados (0 desabilita) têm as linhas
+ * excedentes gravadas em arquivo temporário, removido ao fechar o
+ * {@link ProcedureResult} (veja
+ * {@link br.com.bettercode.resulttransformer.SpilledList}). Com essas
+ * propriedades habilitadas, os resultados devem ser fechados: do contrário os
+ * arquivos só são removidos ao término da JVM.
+ * </p>
+ */
+public final class ProcedureDefaults {
+
+	public static final String FETCH_SIZE_PROPERTY = "br.com.bettercode.procedure.fetchSize";
+
+	public static final String CURSOR_FETCH_SIZE_PROPERTY = "br.com.bettercode.procedure.cursorFetchSize";
+
+	public static final String MAX_ROWS_PROPERTY = "br.com.bettercode.procedure.maxRows";
+
+	public static final String TIMEOUT_PROPERTY = "br.com.bettercode.procedure.timeout";
+
+	public static final String FETCH_BUDGET_PROPERTY = "br.com.bettercode.procedure.fetchBudget";
+
+	public static final String SPILL_ROWS_PROPERTY = "br.com.bettercode.procedure.spillRows";
+
+	public static final String SPILL_BYTES_PROPERTY = "br.com.bettercode.procedure.spillBytes";
+
+	private static volatile int fetchSize = Integer.getInteger(FETCH_SIZE_PROPERTY, 0);
+
+	private static volatile int cursorFetchSize = Integer.getInteger(CURSOR_FETCH_SIZE_PROPERTY, 0);
+
+	private static volatile int maxRows = Integer.getInteger(MAX_ROWS_PROPERTY, 0);
+
+	private static volatile int timeoutSeconds = Integer.getInteger(TIMEOUT_PROPERTY, 0);
+
+	private static volatile long fetchBudget = Long.getLong(FETCH_BUDGET_PROPERTY, 0L);
+
+	private static volatile int spillRows = Integer.getInteger(SPILL_ROWS_PROPERTY, 0);
+
+	private static volatile long spillBytes = Long.getLong(SPILL_BYTES_PROPERTY, 0L);
+
+	private ProcedureDefaults() {
+	}
+
+	/**
+	 * @return fetch size do result set retornado pela procedure
+	 */
+	public static int getFetchSize() {
+		return fetchSize;
+	}
+
+	public static void setFetchSize(int fetchSize) {
+		Validator.GET.greaterOrEqualsZero(fetchSize);
+		ProcedureDefaults.fetchSize = fetchSize;
+	}
+
+	/**
+	 * @return fetch size dos cursores de saída ({@link SqlType#isCursor()})
+	 */
+	public static int getCursorFetchSize() {
+		return cursorFetchSize;
+	}
+
+	public static void setCursorFetchSize(int cursorFetchSize) {
+		Validator.GET.greaterOrEqualsZero(cursorFetchSize);
+		ProcedureDefaults.cursorFetchSize = cursorFetchSize;
+	}
+
+	public static int getMaxRows() {
+		return maxRows;
+	}
+
+	public static void setMaxRows(int maxRows) {
+		Validator.GET.greaterOrEqualsZero(maxRows);
+		ProcedureDefaults.maxRows = maxRows;
+	}
+
+	/**
+	 * @return timeout em segundos
+	 */
+	public static int getTimeoutSeconds() {
+		return timeoutSeconds;
+	}
+
+	/**
+	 * @param timeout
+	 *            - arredondado para cima em segundos; 0 desabilita
+	 * @param unit
+	 */
+	public static void setTimeout(long timeout, TimeUnit unit) {
+		ProcedureDefaults.timeoutSeconds = toSeconds(timeout, unit);
+	}
+
+	/**
+	 * @return bytes por ida ao servidor usados no fetch size adaptativo; 0
+	 *         desabilita
+	 */
+	public static long getFetchBudget() {
+		return fetchBudget;
+	}
+
+	public static void setFetchBudget(long fetchBudget) {
+		Validator.GET.greaterOrEqualsZero(fetchBudget);
+		ProcedureDefaults.fetchBudget = fetchBudget;
+	}
+
+	/**
+	 * @return linhas de um result set mantidas em memória; 0 não limita. As
+	 *         excedentes vão para um arquivo removido por
+	 *         {@link ProcedureResult#close()}
+	 */
+	public static int getSpillRows() {
+		return spillRows;
+	}
+
+	public static void setSpillRows(int spillRows) {
+		Validator.GET.greaterOrEqualsZero(spillRows);
+		ProcedureDefaults.spillRows = spillRows;
+	}
+
+	/**
+	 * @return bytes estimados de um result set mantidos em memória; 0 não
+	 *         limita. Os excedentes vão para um arquivo removido por
+	 *         {@link ProcedureResult#close()}
+	 */
+	public static long getSpillBytes() {
+		return spillBytes;
+	}
+
+	public static void setSpillBytes(long spillBytes) {
+		Validator.GET.greaterOrEqualsZero(spillBytes);
+		ProcedureDefaults.spillBytes = spillBytes;
+	}
+
+	/**
+	 * Converte o timeout para os segundos usados por
+	 * {@link java.sql.Statement#setQueryTimeout(int)}, arredondando para cima e
+	 * limitando a {@link Integer#MAX_VALUE}.
+	 */
+	static int toSeconds(long timeout, TimeUnit unit) {
+		Validator.GET.notNull(unit).greaterOrEqualsZero(timeout);
+		final long seconds = unit.toSeconds(timeout);
+		if (seconds >= Integer.MAX_VALUE) {
+			return Integer.MAX_VALUE;
+		}
+		// Abaixo do limite, os nanossegundos não estouram o long
+		return (int) (unit.toNanos(timeout) > TimeUnit.SECONDS.toNanos(seconds) ? seconds + 1 : seconds);
+	}
+}
@@ -0,0 +1,220 @@
+package br.com.bettercode.procedure;
+
+import java.lang.ref.WeakReference;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.sql.Wrapper;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.Oracle8iDialect;
+import org.hibernate.dialect.SQLServerDialect;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.SessionImplementor;
+
+/**
+ * Comportamento específico de cada banco na execução de procedures: tipo
+ * usado em parâmetros nulos, tipo dos cursores de saída e demais caminhos
+ * próprios do driver.
+ *
+ * <p>
+ * O dialeto é escolhido uma única vez por SessionFactory, a partir da classe
+ * do dialeto do Hibernate (e de suas superclasses). Dialetos adicionais podem
+ * ser associados com {@link #register(Class, ProcedureDialect)}; sem
+ * correspondência é usado {@link #DEFAULT}.
+ * </p>
+ */
+public class ProcedureDialect {
+
+	/**
+	 * JDBC padrão.
+	 */
+	public static final ProcedureDialect DEFAULT = new ProcedureDialect();
+
+	/** Dialetos indexados pelo nome da classe do dialeto do Hibernate. */
+	private static final ConcurrentMap<String, ProcedureDialect> REGISTERED = new ConcurrentHashMap<String, ProcedureDialect>();
+
+	private static final Map<SessionFactory, ProcedureDialect> RESOLVED = new WeakHashMap<SessionFactory, ProcedureDialect>();
+
+	private static volatile Resolved last;
+
+	static {
+		final ProcedureDialect oracle = new OracleProcedureDialect();
+		REGISTERED.put(Oracle8iDialect.class.getName(), oracle);
+		// Oracle9Dialect (e OracleDialect, sua subclasse) é obsoleto e não
+		// descende de Oracle8iDialect; referenciado pelo nome para não
+		// depender de uma classe deprecated
+		REGISTERED.put("org.hibernate.dialect.Oracle9Dialect", oracle);
+		REGISTERED.put(SQLServerDialect.class.getName(), new SqlServerProcedureDialect());
+		REGISTERED.put(MySQLDialect.class.getName(), new MySqlProcedureDialect());
+	}
+
+	protected ProcedureDialect() {
+	}
+
+	/**
+	 * @return tipo JDBC usado para associar valores nulos
+	 */
+	public int nullType() {
+		return Types.OTHER;
+	}
+
+	/**
+	 * @return se o banco retorna cursores como parâmetros de saída
+	 *         {@link SqlType#CURSOR}
+	 */
+	public boolean supportsCursorOutput() {
+		return true;
+	}
+
+	/**
+	 * @return tipo JDBC dos parâmetros de saída {@link SqlType#CURSOR}; usado
+	 *         apenas se {@link #supportsCursorOutput()}
+	 */
+	public int cursorType() {
+		return Types.OTHER;
+	}
+
+	/**
+	 * Chamado com a conexão antes da preparação do statement, para ajustes
+	 * próprios do driver.
+	 */
+	public void configure(Connection connection) throws SQLException {
+	}
+
+	/**
+	 * Chamado antes da execução de procedures com cursores de saída, para que
+	 * o driver já traga as linhas na quantidade informada.
+	 * 
+	 * @param fetchSize
+	 *            - fetch size dos cursores; maior que zero
+	 */
+	public void cursorFetchSize(CallableStatement call, int fetchSize) throws SQLException {
+	}
+
+	/**
+	 * Associa uma coleção a um parâmetro de entrada. O padrão cria um array
+	 * JDBC com {@link Connection#createArrayOf}; sem nome de tipo, usa o tipo
+	 * dos elementos.
+	 */
+	public void bindArray(Connection connection, CallableStatement call, int ordinal, SqlArray array)
+			throws SQLException {
+		final String typeName = array.getTypeName() != null ? array.getTypeName() : elementTypeName(array
+				.getElementType());
+		call.setArray(ordinal, connection.createArrayOf(typeName, array.values()));
+	}
+
+	private static String elementTypeName(SqlType type) {
+		if (type.isCursor() || type == SqlType.ARRAY) {
+			throw new IllegalArgumentException(String.format("%s is not supported as an array element.", type));
+		}
+		return type == SqlType.LONG ? SqlType.BIGINT.name() : type.name();
+	}
+
+	/**
+	 * Associa o dialeto às SessionFactories cujo dialeto do Hibernate seja a
+	 * classe informada ou uma subclasse. Vale para as SessionFactories ainda
+	 * não resolvidas.
+	 */
+	public static void register(Class<? extends Dialect> dialect, ProcedureDialect procedureDialect) {
+		Validator.GET.notNull(dialect, procedureDialect);
+		REGISTERED.put(dialect.getName(), procedureDialect);
+	}
+
+	/**
+	 * @return dialeto da sessão; {@link #DEFAULT} caso a sessão não exponha sua
+	 *         SessionFactory
+	 */
+	static ProcedureDialect of(Session session) {
+		if (!(session instanceof SessionImplementor)) {
+			return DEFAULT;
+		}
+		return of(((SessionImplementor) session).getFactory());
+	}
+
+	/**
+	 * @return dialeto da SessionFactory, resolvido uma única vez
+	 */
+	public static ProcedureDialect of(SessionFactoryImplementor factory) {
+		Validator.GET.notNull(factory);
+		final Resolved resolved = last;
+		if (resolved != null && resolved.factory.get() == factory) {
+			return resolved.dialect;
+		}
+
+		ProcedureDialect dialect;
+		synchronized (RESOLVED) {
+			dialect = RESOLVED.get(factory);
+			if (dialect == null) {
+				dialect = resolve(factory.getDialect());
+				RESOLVED.put(factory, dialect);
+			}
+		}
+		last = new Resolved(factory, dialect);
+		return dialect;
+	}
+
+	private static ProcedureDialect resolve(Dialect dialect) {
+		for (Class<?> c = dialect == null ? null : dialect.getClass(); c != null; c = c.getSuperclass()) {
+			final ProcedureDialect registered = REGISTERED.get(c.getName());
+			if (registered != null) {
+				return registered;
+			}
+		}
+		return DEFAULT;
+	}
+
+	/**
+	 * Objeto do driver por trás de um proxy (pool de conexões, etc).
+	 * 
+	 * @return objeto do tipo informado ou null caso não esteja disponível
+	 */
+	protected static <T> T unwrap(Object object, Class<T> type) {
+		if (type.isInstance(object)) {
+			return type.cast(object);
+		}
+		if (object instanceof Wrapper) {
+			try {
+				final Wrapper wrapper = (Wrapper) object;
+				if (wrapper.isWrapperFor(type)) {
+					return wrapper.unwrap(type);
+				}
+			} catch (SQLException e) {
+				return null;
+			} catch (AbstractMethodError e) {
+				// Pool anterior ao JDBC 4
+				return null;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * Último dialeto resolvido; evita o lock no caso comum de uma única
+	 * SessionFactory.
+	 */
+	private static final class Resolved {
+
+		final WeakReference<SessionFactory> factory;
+
+		final ProcedureDialect dialect;
+
+		Resolved(SessionFactory factory, ProcedureDialect dialect) {
+			this.factory = new WeakReference<SessionFactory>(factory);
+			this.dialect = dialect;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package br.com.bettercode.procedure;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executores usados por {@link Procedure#executeAsync()}.
+ *
+ * <p>
+ * O executor padrão é um pool limitado a {@value #THREADS_PROPERTY} threads
+ * (padrão: duas por processador, no mínimo {@value #MIN_DEFAULT_THREADS}) e a
+ * uma fila de {@value #QUEUE_SIZE_PROPERTY} execuções (padrão
+ * {@value #DEFAULT_QUEUE_SIZE}). Com a fila cheia, a execução ocorre na própria
+ * thread que a submeteu, o que limita a taxa de submissão ao que o pool
+ * consegue atender. As procedures de um {@link ProcedureGroup} são exceção:
+ * falham imediatamente, para que o prazo do grupo seja respeitado.
+ * </p>
+ */
+public final class ProcedureExecutors {
+
+	public static final String THREADS_PROPERTY = "br.com.bettercode.procedure.asyncThreads";
+
+	public static final String QUEUE_SIZE_PROPERTY = "br.com.bettercode.procedure.asyncQueueSize";
+
+	public static final int MIN_DEFAULT_THREADS = 4;
+
+	public static final int DEFAULT_QUEUE_SIZE = 128;
+
+	private static volatile ExecutorService defaultExecutor;
+
+	private ProcedureExecutors() {
+	}
+
+	/**
+	 * Cria pool limitado de threads daemon. Com todas as threads ocupadas e a
+	 * fila cheia, a execução ocorre na thread que a submeteu, salvo as de um
+	 * {@link ProcedureGroup}, que falham.
+	 *
+	 * @param threads
+	 *            - quantidade máxima de execuções simultâneas
+	 * @param queueSize
+	 *            - execuções aguardando uma thread livre
+	 */
+	public static ThreadPoolExecutor newBoundedPool(int threads, int queueSize) {
+		Validator.GET.greaterThanZero(threads, queueSize);
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize), new DaemonThreadFactory(),
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * @return executor padrão, criado no primeiro uso
+	 */
+	public static ExecutorService getDefault() {
+		ExecutorService executor = defaultExecutor;
+		if (executor == null) {
+			synchronized (ProcedureExecutors.class) {
+				executor = defaultExecutor;
+				if (executor == null) {
+					final int threads = Math.max(MIN_DEFAULT_THREADS, Runtime.getRuntime().availableProcessors() * 2);
+					executor = newBoundedPool(Integer.getInteger(THREADS_PROPERTY, threads), Integer.getInteger(
+							QUEUE_SIZE_PROPERTY, DEFAULT_QUEUE_SIZE));
+					defaultExecutor = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Substitui o executor padrão. O executor anterior não é encerrado.
+	 */
+	public static void setDefault(ExecutorService executor) {
+		Validator.GET.notNull(executor);
+		defaultExecutor = executor;
+	}
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger POOLS = new AtomicInteger();
+
+		private final int pool = POOLS.incrementAndGet();
+
+		private final AtomicInteger threads = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			final Thread thread = new Thread(runnable, String.format("procedure-async-%d-%d", pool, threads
+					.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
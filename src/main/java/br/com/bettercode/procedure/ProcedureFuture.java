@@ -0,0 +1,135 @@
+package br.com.bettercode.procedure;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Execução assíncrona de procedure. O cancelamento com interrupção também
+ * cancela, através de {@link Statement#cancel()}, o statement em execução no
+ * banco. Um resultado produzido mas não entregue por causa do cancelamento é
+ * fechado, devolvendo a conexão.
+ */
+final class ProcedureFuture extends FutureTask<ProcedureResult> {
+
+	private static Logger log = Logger.getLogger(ProcedureFuture.class);
+
+	private volatile Statement statement;
+
+	private volatile boolean interrupt;
+
+	/** Resultado produzido e ainda não entregue; fechado se o futuro for cancelado. */
+	private final AtomicReference<ProcedureResult> produced = new AtomicReference<ProcedureResult>();
+
+	/** Recebe este futuro ao término da execução; pode ser nulo. */
+	private final Queue<? super ProcedureFuture> completion;
+
+	/**
+	 * Thread que submeteu a execução de um {@link ProcedureGroup}; a execução
+	 * não ocorre nela.
+	 */
+	private final Thread submitter;
+
+	/**
+	 * @param completion
+	 *            - fila de conclusão de um {@link ProcedureGroup}; pode ser
+	 *            nula
+	 */
+	ProcedureFuture(Callable<ProcedureResult> callable, Queue<? super ProcedureFuture> completion) {
+		super(callable);
+		this.completion = completion;
+		this.submitter = completion == null ? null : Thread.currentThread();
+	}
+
+	/**
+	 * Executada pela própria thread que a submeteu (executor saturado com
+	 * {@link java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy}), a
+	 * procedure de um grupo falha imediatamente: o grupo só aguarda o prazo
+	 * depois de submeter todas as procedures.
+	 */
+	@Override
+	public void run() {
+		if (submitter == Thread.currentThread()) {
+			setException(new RejectedExecutionException(
+					"Executor is saturated and would run the procedure on the thread waiting for its group."));
+			return;
+		}
+		super.run();
+	}
+
+	/**
+	 * Statement em execução; cancelado imediatamente caso o futuro já tenha
+	 * sido cancelado.
+	 */
+	void running(Statement statement) {
+		this.statement = statement;
+		if (isCancelled() && interrupt) {
+			cancelStatement();
+		}
+	}
+
+	void finished() {
+		this.statement = null;
+	}
+
+	/**
+	 * Resultado da execução, registrado antes de ser publicado. Se o futuro já
+	 * foi cancelado, ou vier a ser antes da publicação, o resultado é fechado.
+	 */
+	void produced(ProcedureResult result) {
+		produced.set(result);
+		if (isCancelled()) {
+			closeUndelivered();
+		}
+	}
+
+	@Override
+	protected void done() {
+		if (isCancelled()) {
+			closeUndelivered();
+		} else {
+			produced.set(null);
+		}
+		if (completion != null) {
+			completion.offer(this);
+		}
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		interrupt = mayInterruptIfRunning;
+		final boolean cancelled = super.cancel(mayInterruptIfRunning);
+		if (cancelled && mayInterruptIfRunning) {
+			cancelStatement();
+		}
+		return cancelled;
+	}
+
+	private void closeUndelivered() {
+		final ProcedureResult result = produced.getAndSet(null);
+		if (result != null) {
+			try {
+				result.close();
+			} catch (RuntimeException e) {
+				log.warn("Error while closing cancelled procedure result. " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private void cancelStatement() {
+		final Statement current = statement;
+		if (current != null) {
+			try {
+				current.cancel();
+			} catch (SQLException e) {
+				log.warn("Error while cancelling procedure statement. " + e.getMessage(), e);
+			}
+		}
+	}
+}
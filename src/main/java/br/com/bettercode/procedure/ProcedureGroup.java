@@ -0,0 +1,186 @@
+package br.com.bettercode.procedure;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Executa em paralelo procedures independentes, cada uma em sua própria
+ * conexão (veja {@link Procedure#executeAsync(ExecutorService)}), e reúne os
+ * resultados.
+ *
+ * <p>
+ * Ou todas as procedures terminam com sucesso dentro do prazo ou nenhum
+ * resultado é retornado: na primeira falha as demais execuções são canceladas,
+ * os resultados já obtidos são fechados e uma
+ * {@link CannotInvokeProcedureException} é lançada. Cada procedure confirma a
+ * própria conexão, portanto o grupo não é transacional; destina-se a consultas
+ * independentes.
+ * </p>
+ *
+ * <pre>
+ * Map&lt;String, ProcedureResult&gt; results = ProcedureGroup.create()
+ * 		.add(&quot;sales&quot;, Procedure.create(session, &quot;sp_sales(:from,:total)&quot;).input(&quot;from&quot;, from).output(&quot;total&quot;, SqlType.DOUBLE))
+ * 		.add(&quot;stock&quot;, Procedure.create(session, &quot;sp_stock(:total)&quot;).output(&quot;total&quot;, SqlType.INTEGER))
+ * 		.deadline(2, TimeUnit.SECONDS).execute();
+ * </pre>
+ */
+public final class ProcedureGroup {
+
+	private final Map<String, Procedure> procedures = Maps.newLinkedHashMap();
+
+	private ExecutorService executor = null;
+
+	private long deadlineNanos = 0L;
+
+	private ProcedureGroup() {
+	}
+
+	public static ProcedureGroup create() {
+		return new ProcedureGroup();
+	}
+
+	/**
+	 * Adiciona procedure com todos os parâmetros já associados.
+	 *
+	 * @param key
+	 *            - chave do resultado no mapa retornado por {@link #execute()}
+	 * @param procedure
+	 */
+	public ProcedureGroup add(String key, Procedure procedure) {
+		Validator.GET.notNull(key, procedure);
+		if (procedures.containsKey(key)) {
+			throw new IllegalArgumentException(String.format("Procedure %s already added to the group.", key));
+		}
+		procedures.put(key, procedure);
+		return this;
+	}
+
+	/**
+	 * Executor das procedures; padrão: {@link ProcedureExecutors#getDefault()}.
+	 * Uma procedure que o executor rodaria na própria thread que chamou
+	 * {@link #execute()}, como ao saturar um pool com
+	 * {@link java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy}, falha
+	 * o grupo.
+	 */
+	public ProcedureGroup executor(ExecutorService executor) {
+		Validator.GET.notNull(executor);
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Prazo para o término de todas as procedures, contado a partir de
+	 * {@link #execute()}. Sem prazo por padrão.
+	 */
+	public ProcedureGroup deadline(long timeout, TimeUnit unit) {
+		Validator.GET.notNull(unit).greaterThanZero(timeout);
+		this.deadlineNanos = unit.toNanos(timeout);
+		return this;
+	}
+
+	/**
+	 * Executa todas as procedures e aguarda seus resultados.
+	 *
+	 * @return resultados indexados pelas chaves, na ordem em que as procedures
+	 *         foram adicionadas
+	 * @throws CannotInvokeProcedureException
+	 *             se alguma procedure falhar ou o prazo terminar
+	 */
+	public Map<String, ProcedureResult> execute() {
+		Validator.GET.notEmpty(procedures.keySet());
+
+		final long start = System.nanoTime();
+		final ExecutorService executor = this.executor == null ? ProcedureExecutors.getDefault() : this.executor;
+		final BlockingQueue<ProcedureFuture> completion = new LinkedBlockingQueue<ProcedureFuture>();
+		final Map<ProcedureFuture, String> keys = new IdentityHashMap<ProcedureFuture, String>();
+		final Map<String, ProcedureResult> results = Maps.newLinkedHashMap();
+		for (String key : procedures.keySet()) {
+			results.put(key, null);
+		}
+
+		boolean succeeded = false;
+		try {
+			for (Map.Entry<String, Procedure> entry : procedures.entrySet()) {
+				keys.put(entry.getValue().submit(executor, completion), entry.getKey());
+			}
+
+			for (int done = 0; done < keys.size(); done++) {
+				final ProcedureFuture future = next(completion, start);
+				final String key = keys.get(future);
+				results.put(key, get(key, future));
+			}
+			succeeded = true;
+			return Collections.unmodifiableMap(results);
+		} finally {
+			if (!succeeded) {
+				abort(keys.keySet(), results);
+			}
+		}
+	}
+
+	/**
+	 * Próxima execução concluída, respeitando o prazo do grupo.
+	 */
+	private ProcedureFuture next(BlockingQueue<ProcedureFuture> completion, long start) {
+		try {
+			if (deadlineNanos == 0L) {
+				return completion.take();
+			}
+			final ProcedureFuture future = completion.poll(deadlineNanos - (System.nanoTime() - start),
+					TimeUnit.NANOSECONDS);
+			if (future == null) {
+				throw new CannotInvokeProcedureException(String.format("Procedure group exceeded its deadline of %d ms.",
+						TimeUnit.NANOSECONDS.toMillis(deadlineNanos)), new TimeoutException());
+			}
+			return future;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CannotInvokeProcedureException("Interrupted while waiting for procedure group.", e);
+		}
+	}
+
+	private static ProcedureResult get(String key, ProcedureFuture future) {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw new CannotInvokeProcedureException(String.format("Procedure %s failed. %s", key, e.getCause()
+					.getMessage()), e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CannotInvokeProcedureException("Interrupted while waiting for procedure group.", e);
+		}
+	}
+
+	/**
+	 * Cancela as execuções pendentes e fecha os resultados já obtidos.
+	 */
+	private static void abort(Iterable<ProcedureFuture> futures, Map<String, ProcedureResult> results) {
+		for (ProcedureFuture future : futures) {
+			if (!future.cancel(true) && future.isDone() && !future.isCancelled()) {
+				try {
+					// Concluída após a falha: o resultado também é descartado
+					final ProcedureResult result = future.get();
+					if (!results.containsValue(result)) {
+						result.close();
+					}
+				} catch (Exception e) {
+					// Falha já tratada ou irrelevante para o grupo
+				}
+			}
+		}
+		for (ProcedureResult result : results.values()) {
+			if (result != null) {
+				result.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package br.com.bettercode.procedure;
+
+import java.util.Arrays;
+
+import org.hibernate.SessionFactory;
+
+/**
+ * Identifica uma execução de procedure: SessionFactory (e com ela o banco),
+ * assinatura compilada, valores de entrada, parâmetros de saída, classes e
+ * limite de linhas dos result sets.
+ * Usada pelo {@link ProcedureResultCache} e por {@link SingleFlight}.
+ */
+final class ProcedureKey {
+
+	/** Nome da procedure (veja {@link ProcedureTemplate#getName()}). */
+	final String procedure;
+
+	private final Object[] parts;
+
+	private final int hash;
+
+	/**
+	 * @param factory
+	 *            - SessionFactory da sessão; pode ser nula
+	 * @param inputs
+	 *            - valores de entrada; copiados
+	 */
+	ProcedureKey(SessionFactory factory, ProcedureTemplate template, Object[] inputs, SqlType[] outputs,
+			Class<?>[] resultSetClasses, int maxRows) {
+		this.procedure = template.getName();
+		this.parts = new Object[] { factory, template.getSignature(), template.isFunction(), resultSetClasses,
+				maxRows, inputs.clone(), outputs.clone() };
+		this.hash = Arrays.deepHashCode(parts);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ProcedureKey)) {
+			return false;
+		}
+		final ProcedureKey other = (ProcedureKey) obj;
+		return hash == other.hash && Arrays.deepEquals(parts, other.parts);
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.deepToString(parts);
+	}
+}
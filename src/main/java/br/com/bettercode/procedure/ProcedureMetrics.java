@@ -0,0 +1,97 @@
+package br.com.bettercode.procedure;
+
+/**
+ * Recebe as medições das execuções de procedures. Registrado com
+ * {@link Procedure#setMetrics(ProcedureMetrics)}; enquanto o padrão
+ * {@link #NOOP} estiver em uso nenhuma medição é feita.
+ * 
+ * <p>
+ * As implementações são chamadas pelas threads que executam as procedures e
+ * devem ser thread-safe.
+ * </p>
+ * 
+ * @see JmxProcedureMetrics
+ */
+public interface ProcedureMetrics {
+
+	/**
+	 * Fases de uma execução.
+	 */
+	enum Phase {
+		/** Preparação (ou recuperação do cache) do statement. */
+		PREPARE,
+		/** Associação dos parâmetros de entrada e saída. */
+		BIND,
+		/** Execução no servidor. */
+		EXECUTE,
+		/** Mapeamento do result set da procedure. */
+		MAP_RESULT_SET,
+		/** Leitura dos parâmetros de saída. */
+		FETCH_OUTPUTS
+	}
+
+	/**
+	 * Não registra nada.
+	 */
+	ProcedureMetrics NOOP = new ProcedureMetrics() {
+
+		@Override
+		public void phase(String procedure, Phase phase, long nanos) {
+		}
+
+		@Override
+		public void rowsMapped(String procedure, long rows, long bytes) {
+		}
+
+		@Override
+		public void error(String procedure, Throwable error) {
+		}
+
+		@Override
+		public void fetchSize(String procedure, int fetchSize, long expectedRows, int rowWidth) {
+		}
+	};
+
+	/**
+	 * @param procedure
+	 *            - nome da procedure
+	 * @param phase
+	 *            - fase medida
+	 * @param nanos
+	 *            - duração da fase
+	 */
+	void phase(String procedure, Phase phase, long nanos);
+
+	/**
+	 * @param procedure
+	 *            - nome da procedure
+	 * @param rows
+	 *            - linhas mapeadas
+	 * @param bytes
+	 *            - estimativa de bytes lidos, a partir dos metadados das
+	 *            colunas
+	 */
+	void rowsMapped(String procedure, long rows, long bytes);
+
+	/**
+	 * @param procedure
+	 *            - nome da procedure
+	 * @param error
+	 *            - erro ocorrido na execução
+	 */
+	void error(String procedure, Throwable error);
+
+	/**
+	 * Fetch size escolhido a partir das execuções anteriores.
+	 * 
+	 * @param procedure
+	 *            - nome da procedure
+	 * @param fetchSize
+	 *            - fetch size aplicado
+	 * @param expectedRows
+	 *            - quantidade típica de linhas aprendida
+	 * @param rowWidth
+	 *            - largura média aprendida das linhas, em bytes
+	 */
+	void fetchSize(String procedure, int fetchSize, long expectedRows, int rowWidth);
+}
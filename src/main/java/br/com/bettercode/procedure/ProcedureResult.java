@@ -1,27 +1,225 @@
 package br.com.bettercode.procedure;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.sql.Blob;
+import java.sql.Clob;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.log4j.Logger;
+
+import br.com.bettercode.resulttransformer.ColumnarResult;
+import br.com.bettercode.resulttransformer.ResultSetIterator;
 import br.com.bettercode.resulttransformer.ResultSetMapper;
+import br.com.bettercode.resulttransformer.RowHandler;
+import br.com.bettercode.resulttransformer.SpilledList;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
-public final class ProcedureResult {
+public final class ProcedureResult implements Closeable {
+
+	private static Logger log = Logger.getLogger(ProcedureResult.class);
+
+	private final ProcedureTemplate template;
 	
 	private Map<String, Object>outputs = Maps.newHashMap();
 
 	private List<?> rs = null;
 
+	/**
+	 * Result sets na ordem retornada, quando a procedure declara mais de um.
+	 */
+	private final List<List<?>> resultSets = Lists.newArrayList();
+
+	private final List<Integer> updateCounts = Lists.newArrayList();
+
+	private ColumnarResult columnar = null;
+
+	/** Listas gravadas em arquivo, removidas em {@link #close()}. */
+	private final List<SpilledList<?>> spilled = Lists.newArrayList();
+
+	private Statement statement = null;
+
+	private int openCursors = 0;
+
+	/** LOBs de saída dependem do statement até {@link #close()}. */
+	private boolean lobOutputs = false;
+
+	private Runnable release = null;
+
+	public ProcedureResult() {
+		this(null);
+	}
+
+	/**
+	 * @param template
+	 *            - assinatura da procedure, usada nas medições dos cursores de
+	 *            saída
+	 */
+	ProcedureResult(ProcedureTemplate template) {
+		this.template = template;
+	}
+
 	public void setResultSet(List<?> rs) {
 		this.rs = rs;
+		track(rs);
 	}
 
 	public List<?> getResultSet() {
 		return this.rs;
 	}
 
+	/**
+	 * @return conteúdo do parâmetro de saída {@link SqlType#BLOB}, lido sob
+	 *         demanda; null caso seja nulo
+	 */
+	public InputStream getBinaryStream(String output) throws SQLException {
+		final Blob blob = lob(output, Blob.class);
+		return blob == null ? null : blob.getBinaryStream();
+	}
+
+	/**
+	 * @return conteúdo do parâmetro de saída {@link SqlType#CLOB}, lido sob
+	 *         demanda; null caso seja nulo
+	 */
+	public Reader getCharacterStream(String output) throws SQLException {
+		final Clob clob = lob(output, Clob.class);
+		return clob == null ? null : clob.getCharacterStream();
+	}
+
+	/**
+	 * Grava no canal o parâmetro de saída {@link SqlType#BLOB}.
+	 * 
+	 * @return bytes transferidos
+	 * @see Lobs#transfer(Blob, WritableByteChannel)
+	 */
+	public long transferTo(String output, WritableByteChannel channel) throws SQLException, IOException {
+		final Blob blob = lob(output, Blob.class);
+		return blob == null ? 0 : Lobs.transfer(blob, channel);
+	}
+
+	/**
+	 * Grava no arquivo o parâmetro de saída {@link SqlType#BLOB}.
+	 * 
+	 * @return bytes transferidos
+	 */
+	public long transferTo(String output, File file) throws SQLException, IOException {
+		final Blob blob = lob(output, Blob.class);
+		return blob == null ? 0 : Lobs.transfer(blob, file);
+	}
+
+	/**
+	 * Grava no writer o parâmetro de saída {@link SqlType#CLOB}.
+	 * 
+	 * @return caracteres transferidos
+	 */
+	public long transferTo(String output, Writer writer) throws SQLException, IOException {
+		final Clob clob = lob(output, Clob.class);
+		return clob == null ? 0 : Lobs.transfer(clob, writer);
+	}
+
+	/**
+	 * Grava no arquivo o parâmetro de saída {@link SqlType#CLOB}, codificado
+	 * com o charset informado.
+	 * 
+	 * @return caracteres transferidos
+	 */
+	public long transferTo(String output, File file, Charset charset) throws SQLException, IOException {
+		final Clob clob = lob(output, Clob.class);
+		return clob == null ? 0 : Lobs.transfer(clob, file, charset);
+	}
+
+	private <L> L lob(String output, Class<L> type) {
+		Validator.GET.notNull(output);
+		final Object value = outputs.get(output);
+		if (value != null && !type.isInstance(value)) {
+			throw new IllegalArgumentException(String.format("Output %s is not a %s.", output, type.getSimpleName()));
+		}
+		return type.cast(value);
+	}
+
+	/**
+	 * @return result set lido por colunas, quando a procedure é executada com
+	 *         {@link Procedure#columnar()}
+	 */
+	public ColumnarResult getColumnarResult() {
+		return columnar;
+	}
+
+	void setColumnarResult(ColumnarResult columnar) {
+		this.columnar = columnar;
+	}
+
+	/**
+	 * @param index
+	 *            - posição do result set, a partir de 0
+	 * @return lista mapeada; null caso o result set não tenha sido retornado,
+	 *         não tenha sido mapeado ou tenha sido entregue a um handler
+	 * @see Procedure#resultSets(Class...)
+	 */
+	public List<?> getResultSet(int index) {
+		Validator.GET.greaterOrEqualsZero(index);
+		if (resultSets.isEmpty()) {
+			return index == 0 ? rs : null;
+		}
+		return index < resultSets.size() ? resultSets.get(index) : null;
+	}
+
+	/**
+	 * @return quantidade de result sets retornados pela procedure; apenas
+	 *         quando declarados com {@link Procedure#resultSets(Class...)}
+	 */
+	public int getResultSetCount() {
+		return resultSets.size();
+	}
+
+	/**
+	 * @return contagens de atualização retornadas entre os result sets, na
+	 *         ordem
+	 */
+	public List<Integer> getUpdateCounts() {
+		return Collections.unmodifiableList(updateCounts);
+	}
+
+	void addResultSet(List<?> list) {
+		if (resultSets.isEmpty()) {
+			rs = list;
+		}
+		resultSets.add(list);
+		track(list);
+	}
+
+	private <L extends List<?>> L track(L list) {
+		if (list instanceof SpilledList<?>) {
+			spilled.add((SpilledList<?>) list);
+		}
+		return list;
+	}
+
+	/**
+	 * @return se algum result set foi gravado em arquivo
+	 */
+	boolean isSpilled() {
+		return !spilled.isEmpty();
+	}
+
+	void addUpdateCount(int count) {
+		updateCounts.add(count);
+	}
+
 	@SuppressWarnings("unchecked")
 	public <T> T get(String output){
 		return (T)outputs.get(output);
@@ -32,9 +230,144 @@ public final class ProcedureResult {
 		outputs.put(name, value);
 	}
 
+	/**
+	 * Statement mantido aberto enquanto houver cursores de saída a serem lidos
+	 * ou, havendo LOBs de saída, até {@link #close()}.
+	 */
+	void setStatement(Statement statement) {
+		this.statement = statement;
+		this.openCursors = 0;
+		this.lobOutputs = false;
+		for (Object value : outputs.values()) {
+			if (value instanceof ResultSet) {
+				openCursors++;
+			} else if (value instanceof Blob || value instanceof Clob) {
+				lobOutputs = true;
+			}
+		}
+	}
 
 	/**
-	 * Recupera lista de objetos a partir do result set
+	 * Cópia dos parâmetros de saída e das listas dos result sets, usada pelo
+	 * {@link ProcedureResultCache} e por {@link SingleFlight}. As listas são
+	 * copiadas (as gravadas em arquivo, lidas para a memória) e passam a ser
+	 * imutáveis; os objetos mapeados são compartilhados.
+	 */
+	ProcedureResult copy() {
+		final ProcedureResult copy = new ProcedureResult(template);
+		copy.outputs.putAll(outputs);
+		for (List<?> list : resultSets) {
+			copy.resultSets.add(detached(list));
+		}
+		// O result set principal é o primeiro da lista, salvo se atribuído à parte
+		copy.rs = !resultSets.isEmpty() && rs == resultSets.get(0) ? copy.resultSets.get(0) : detached(rs);
+		copy.updateCounts.addAll(updateCounts);
+		copy.columnar = columnar;
+		return copy;
+	}
+
+	private static List<?> detached(List<?> list) {
+		return list == null ? null : Collections.unmodifiableList(new ArrayList<Object>(list));
+	}
+
+	/**
+	 * @return peso do resultado no cache: 1 mais a quantidade de saídas e de
+	 *         linhas
+	 */
+	long weight() {
+		long weight = 1L + outputs.size() + updateCounts.size() + (columnar == null ? 0 : columnar.getRowCount());
+		if (resultSets.isEmpty()) {
+			return weight + (rs == null ? 0 : rs.size());
+		}
+		for (List<?> list : resultSets) {
+			weight += list == null ? 0 : list.size();
+		}
+		return weight;
+	}
+
+	/**
+	 * @return se algum parâmetro de saída é um cursor
+	 */
+	boolean hasResultSetOutput() {
+		for (Object value : outputs.values()) {
+			if (value instanceof ResultSet) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return se o statement foi mantido aberto para leitura dos cursores
+	 */
+	boolean holdsStatement() {
+		return statement != null;
+	}
+
+	/**
+	 * Ação executada em {@link #close()}, ex.: devolver a conexão de uma
+	 * execução assíncrona.
+	 */
+	void releaseOnClose(Runnable release) {
+		this.release = release;
+	}
+
+	/**
+	 * Fecha o statement assim que todos os cursores de saída forem liberados,
+	 * salvo se houver LOBs de saída, ainda não necessariamente lidos. As
+	 * listas gravadas em arquivo e a conexão de uma execução assíncrona
+	 * continuam disponíveis até {@link #close()}.
+	 */
+	private void cursorClosed() {
+		openCursors--;
+		if (openCursors <= 0 && !lobOutputs) {
+			closeStatement();
+		}
+	}
+
+	private void closeStatement() {
+		if (statement != null) {
+			StatementCache.closeQuietly(statement);
+			statement = null;
+		}
+	}
+
+	/**
+	 * Fecha o cursor lido por completo e conta sua liberação.
+	 */
+	private void closeCursor(ResultSet rs) {
+		try {
+			rs.close();
+		} catch (SQLException e) {
+			log.warn("Error while closing cursor. " + e.getMessage(), e);
+		}
+		cursorClosed();
+	}
+
+	/**
+	 * Libera o statement e os cursores de saída da procedure e remove os
+	 * arquivos dos result sets gravados em disco. Necessário apenas quando há
+	 * parâmetros de saída do tipo cursor ou limites de memória configurados
+	 * (veja {@link ProcedureDefaults#getSpillRows()}).
+	 */
+	public void close() {
+		for (SpilledList<?> list : spilled) {
+			list.close();
+		}
+		spilled.clear();
+		closeStatement();
+		if (release != null) {
+			final Runnable action = release;
+			release = null;
+			action.run();
+		}
+	}
+
+
+	/**
+	 * Recupera lista de objetos a partir do result set. O cursor é fechado
+	 * após o mapeamento e, não havendo outros cursores abertos nem LOBs de
+	 * saída, também o statement.
 	 * 
 	 * @param <T> - tipo da classe a ser retornada
 	 * @param resultSetNameParam - parâmetro da procedure que corresponde ao result set
@@ -56,7 +389,125 @@ public final class ProcedureResult {
 			return null;
 		}
 		
-		return ResultSetMapper.mapResultSet(rs, clazz);
+		final int spillRows = ProcedureDefaults.getSpillRows();
+		final long spillBytes = ProcedureDefaults.getSpillBytes();
+		final int width = observed() ? estimateRowWidth(rs) : 0;
+		final List<T> list;
+		try {
+			list = track(ResultSetMapper.mapResultSet(rs, clazz, spillRows, spillBytes));
+		} finally {
+			closeCursor(rs);
+		}
+		observe(list.size(), width);
+		return list;
+	}
+
+	/**
+	 * Lê o cursor de saída por colunas, em arrays primitivos. O cursor é
+	 * fechado após a leitura, como em {@link #mapResultSet(String, Class)}.
+	 * 
+	 * @param resultSetNameParam - parâmetro da procedure que corresponde ao result set
+	 * @return
+	 * @see ColumnarResult
+	 */
+	public ColumnarResult mapColumnar(String resultSetNameParam) {
+		Validator.GET.notNull(resultSetNameParam);
+
+		// Recupera resultSet
+		final ResultSet rs = get(resultSetNameParam);
+		if (rs == null) {
+			return null;
+		}
+
+		final int width = observed() ? estimateRowWidth(rs) : 0;
+		final ColumnarResult columns;
+		try {
+			columns = ResultSetMapper.mapColumnar(rs);
+		} finally {
+			closeCursor(rs);
+		}
+		observe(columns.getRowCount(), width);
+		return columns;
+	}
+
+	/**
+	 * Mapeia sob demanda o cursor de saída, sem carregar todas as linhas em
+	 * memória. Ao fechar o iterador (ou ao percorrê-lo até o fim) o cursor é
+	 * liberado e, não havendo outros cursores abertos nem LOBs de saída,
+	 * também o statement.
+	 * 
+	 * @param <T> - tipo da classe a ser retornada
+	 * @param resultSetNameParam - parâmetro da procedure que corresponde ao result set
+	 * @param clazz
+	 * @return
+	 */
+	public <T> ResultSetIterator<T> iterateResultSet(String resultSetNameParam, Class<T> clazz) {
+		Validator.GET.notNull(resultSetNameParam, clazz);
+
+		// Recupera resultSet
+		final ResultSet rs = get(resultSetNameParam);
+		if (rs == null) {
+			throw new IllegalArgumentException(String.format("Output %s is not a result set.", resultSetNameParam));
+		}
+
+		final int width = observed() ? estimateRowWidth(rs) : 0;
+		return new ResultSetIterator<T>(rs, clazz) {
+			@Override
+			protected void afterClose() {
+				observe(getRowCount(), width);
+				cursorClosed();
+			}
+		};
+	}
+
+	/**
+	 * @return se as linhas mapeadas dos cursores são observadas, pelo ajuste de
+	 *         fetch size ou pelas métricas
+	 */
+	private boolean observed() {
+		return template != null
+				&& (ProcedureDefaults.getFetchBudget() > 0 || Procedure.getMetrics() != ProcedureMetrics.NOOP);
+	}
+
+	/**
+	 * Informa as linhas mapeadas de um cursor ao ajuste de fetch size e às
+	 * métricas.
+	 */
+	private void observe(int rows, int width) {
+		if (template == null) {
+			return;
+		}
+		if (ProcedureDefaults.getFetchBudget() > 0) {
+			template.fetchAdvisor().observe(rows, width);
+		}
+		final ProcedureMetrics metrics = Procedure.getMetrics();
+		if (metrics != ProcedureMetrics.NOOP) {
+			metrics.rowsMapped(template.getName(), rows, (long) rows * width);
+		}
+	}
+
+	private static int estimateRowWidth(ResultSet rs) {
+		try {
+			return ResultSetMapper.estimateRowWidth(rs.getMetaData());
+		} catch (SQLException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Entrega ao handler cada linha mapeada do cursor de saída e libera o
+	 * cursor ao final.
+	 * 
+	 * @param <T> - tipo da classe a ser retornada
+	 * @param resultSetNameParam - parâmetro da procedure que corresponde ao result set
+	 * @param clazz
+	 * @param handler
+	 * @return quantidade de linhas mapeadas
+	 */
+	public <T> int mapResultSet(String resultSetNameParam, Class<T> clazz, RowHandler<? super T> handler) {
+		Validator.GET.notNull(handler);
+
+		return ResultSetMapper.mapRows(iterateResultSet(resultSetNameParam, clazz), handler);
 	}
 	
 }
@@ -0,0 +1,193 @@
+package br.com.bettercode.procedure;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache dos resultados de procedures somente leitura, habilitado por
+ * procedure com {@link Procedure#cache(long, java.util.concurrent.TimeUnit)}.
+ * A chave é formada pela SessionFactory, pela assinatura compilada, pelos
+ * valores de entrada, pelos parâmetros de saída e pela classe do result set.
+ *
+ * <p>
+ * São guardados os parâmetros de saída e a lista mapeada do result set. O peso
+ * de cada resultado é 1 mais a quantidade de saídas e de linhas; ultrapassado o
+ * peso máximo, definido pela propriedade de sistema {@value #WEIGHT_PROPERTY}
+ * (padrão {@value #DEFAULT_MAX_WEIGHT}), os resultados menos usados são
+ * descartados. Procedures com cursores de saída e resultados gravados em
+ * arquivo nunca são armazenados.
+ * </p>
+ *
+ * <p>
+ * Cada leitura recebe listas próprias e imutáveis, mas os objetos mapeados são
+ * compartilhados entre elas e não devem ser alterados.
+ * </p>
+ */
+public final class ProcedureResultCache {
+
+	public static final String WEIGHT_PROPERTY = "br.com.bettercode.procedure.resultCacheWeight";
+
+	public static final long DEFAULT_MAX_WEIGHT = 10000L;
+
+	private static final ProcedureResultCache DEFAULT = new ProcedureResultCache(Long.getLong(WEIGHT_PROPERTY,
+			DEFAULT_MAX_WEIGHT));
+
+	private final long maxWeight;
+
+	private long weight = 0L;
+
+	private final LinkedHashMap<ProcedureKey, Entry> entries = new LinkedHashMap<ProcedureKey, Entry>(16, 0.75f, true);
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public ProcedureResultCache(long maxWeight) {
+		Validator.GET.greaterThanZero(maxWeight);
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * @return cache usado pelas procedures
+	 */
+	public static ProcedureResultCache getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * @return cópia do resultado armazenado ou null caso não exista ou esteja
+	 *         expirado
+	 */
+	ProcedureResult get(ProcedureKey key) {
+		final Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry != null && entry.expired(System.nanoTime())) {
+				remove(key);
+				misses.incrementAndGet();
+				return null;
+			}
+		}
+		if (entry == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return entry.result.copy();
+	}
+
+	/**
+	 * Armazena uma cópia do resultado, exceto se possuir cursores abertos,
+	 * listas gravadas em arquivo ou peso acima do máximo.
+	 *
+	 * @return se o resultado foi armazenado
+	 */
+	boolean put(ProcedureKey key, ProcedureResult result, long ttlNanos) {
+		if (result.holdsStatement() || result.hasResultSetOutput() || result.isSpilled()) {
+			return false;
+		}
+		final ProcedureResult stored = result.copy();
+		final Entry entry = new Entry(stored, System.nanoTime() + ttlNanos, stored.weight());
+		if (entry.weight > maxWeight) {
+			return false;
+		}
+
+		synchronized (this) {
+			remove(key);
+			entries.put(key, entry);
+			weight += entry.weight;
+
+			final Iterator<Entry> it = entries.values().iterator();
+			while (weight > maxWeight && it.hasNext()) {
+				weight -= it.next().weight;
+				it.remove();
+				evictions.incrementAndGet();
+			}
+		}
+		return true;
+	}
+
+	private void remove(ProcedureKey key) {
+		final Entry removed = entries.remove(key);
+		if (removed != null) {
+			weight -= removed.weight;
+		}
+	}
+
+	/**
+	 * Descarta os resultados da procedure.
+	 *
+	 * @param procedure
+	 *            - nome da procedure (veja {@link ProcedureTemplate#getName()})
+	 */
+	public synchronized void invalidate(String procedure) {
+		Validator.GET.notNull(procedure);
+		final Iterator<Map.Entry<ProcedureKey, Entry>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			final Map.Entry<ProcedureKey, Entry> current = it.next();
+			if (current.getKey().procedure.equalsIgnoreCase(procedure)) {
+				weight -= current.getValue().weight;
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Descarta todos os resultados.
+	 */
+	public synchronized void invalidateAll() {
+		entries.clear();
+		weight = 0L;
+	}
+
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ProcedureResultCache [size=%d, weight=%d/%d, hits=%d, misses=%d, evictions=%d]",
+				getSize(), getWeight(), maxWeight, getHits(), getMisses(), getEvictions());
+	}
+
+	private static final class Entry {
+
+		final ProcedureResult result;
+
+		final long expiresAt;
+
+		final long weight;
+
+		Entry(ProcedureResult result, long expiresAt, long weight) {
+			this.result = result;
+			this.expiresAt = expiresAt;
+			this.weight = weight;
+		}
+
+		boolean expired(long now) {
+			return now - expiresAt >= 0;
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package br.com.bettercode.procedure;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.com.bettercode.procedure.ProcedureMetrics.Phase;
+
+/**
+ * Estatísticas acumuladas de uma procedure.
+ */
+public final class ProcedureStats implements ProcedureStatsMBean {
+
+	private final String procedure;
+
+	private final LatencyHistogram[] latencies = new LatencyHistogram[Phase.values().length];
+
+	private final AtomicLong errors = new AtomicLong();
+
+	private final AtomicLong rowsMapped = new AtomicLong();
+
+	private final AtomicLong bytesFetched = new AtomicLong();
+
+	private volatile int adaptiveFetchSize = -1;
+
+	private volatile long expectedRows = -1;
+
+	private volatile int rowWidth = 0;
+
+	ProcedureStats(String procedure) {
+		this.procedure = procedure;
+		for (int i = 0; i < latencies.length; i++) {
+			latencies[i] = new LatencyHistogram();
+		}
+	}
+
+	void phase(Phase phase, long nanos) {
+		latencies[phase.ordinal()].record(nanos);
+	}
+
+	void rowsMapped(long rows, long bytes) {
+		rowsMapped.addAndGet(rows);
+		bytesFetched.addAndGet(bytes);
+	}
+
+	void error() {
+		errors.incrementAndGet();
+	}
+
+	void fetchSize(int fetchSize, long expectedRows, int rowWidth) {
+		this.adaptiveFetchSize = fetchSize;
+		this.expectedRows = expectedRows;
+		this.rowWidth = rowWidth;
+	}
+
+	@Override
+	public String getProcedure() {
+		return procedure;
+	}
+
+	@Override
+	public long getExecutions() {
+		return latencies[Phase.EXECUTE.ordinal()].count();
+	}
+
+	@Override
+	public long getErrors() {
+		return errors.get();
+	}
+
+	@Override
+	public long getRowsMapped() {
+		return rowsMapped.get();
+	}
+
+	@Override
+	public long getBytesFetched() {
+		return bytesFetched.get();
+	}
+
+	@Override
+	public int getAdaptiveFetchSize() {
+		return adaptiveFetchSize;
+	}
+
+	@Override
+	public long getExpectedRows() {
+		return expectedRows;
+	}
+
+	@Override
+	public int getRowWidth() {
+		return rowWidth;
+	}
+
+	@Override
+	public String[] getLatencySummary() {
+		final Phase[] phases = Phase.values();
+		final String[] summary = new String[phases.length];
+		for (Phase phase : phases) {
+			final LatencyHistogram h = latencies[phase.ordinal()];
+			summary[phase.ordinal()] = String.format("%s count=%d mean=%.1f p50=%.1f p95=%.1f p99=%.1f max=%.1f",
+					phase, h.count(), micros(h.mean()), micros(h.percentile(50)), micros(h.percentile(95)),
+					micros(h.percentile(99)), micros(h.max()));
+		}
+		return summary;
+	}
+
+	@Override
+	public double meanMicros(String phase) {
+		return micros(latencies[Phase.valueOf(phase).ordinal()].mean());
+	}
+
+	@Override
+	public double percentileMicros(String phase, double percentile) {
+		return micros(latencies[Phase.valueOf(phase).ordinal()].percentile(percentile));
+	}
+
+	@Override
+	public void reset() {
+		for (LatencyHistogram h : latencies) {
+			h.reset();
+		}
+		errors.set(0);
+		rowsMapped.set(0);
+		bytesFetched.set(0);
+	}
+
+	private static double micros(long nanos) {
+		return nanos / 1000d;
+	}
+}
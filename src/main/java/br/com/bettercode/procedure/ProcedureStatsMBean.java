@@ -0,0 +1,44 @@
+package br.com.bettercode.procedure;
+
+/**
+ * Estatísticas de uma procedure expostas via JMX. Latências em
+ * microssegundos; fases conforme {@link ProcedureMetrics.Phase}.
+ */
+public interface ProcedureStatsMBean {
+
+	String getProcedure();
+
+	long getExecutions();
+
+	long getErrors();
+
+	long getRowsMapped();
+
+	long getBytesFetched();
+
+	/**
+	 * @return último fetch size adaptativo aplicado ou -1
+	 */
+	int getAdaptiveFetchSize();
+
+	/**
+	 * @return quantidade típica de linhas aprendida ou -1
+	 */
+	long getExpectedRows();
+
+	/**
+	 * @return largura média aprendida das linhas, em bytes
+	 */
+	int getRowWidth();
+
+	/**
+	 * @return uma linha por fase: contagem, média, p50, p95, p99 e máximo
+	 */
+	String[] getLatencySummary();
+
+	double meanMicros(String phase);
+
+	double percentileMicros(String phase, double percentile);
+
+	void reset();
+}
@@ -0,0 +1,281 @@
+package br.com.bettercode.procedure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.hibernate.Session;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Assinatura de procedure (ou função) já compilada: guarda a query JDBC, os
+ * nomes dos parâmetros e suas posições. É imutável e pode ser compartilhada
+ * entre threads; cada execução apenas associa valores através de
+ * {@link #bind(Session)}.
+ *
+ * <p>
+ * As assinaturas compiladas por {@link #compile(String)} e
+ * {@link #compileFunction(String)} ficam em um cache global LRU, limitado
+ * pela propriedade de sistema {@value #CACHE_SIZE_PROPERTY} (padrão
+ * {@value #DEFAULT_CACHE_SIZE}; 0 desabilita). As assinaturas mais usadas
+ * permanecem no cache com o fetch size aprendido por {@link FetchSizeAdvisor}.
+ * </p>
+ */
+public final class ProcedureTemplate {
+
+	public static final String CACHE_SIZE_PROPERTY = "br.com.bettercode.procedure.templateCacheSize";
+
+	public static final int DEFAULT_CACHE_SIZE = 512;
+
+	private static final Pattern FUNCTION_RETURN = Pattern.compile("\\w+\\s+=\\s+");
+
+	private static final BoundedCache<String, ProcedureTemplate> PROCEDURES = new BoundedCache<String, ProcedureTemplate>(
+			Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+
+	private static final BoundedCache<String, ProcedureTemplate> FUNCTIONS = new BoundedCache<String, ProcedureTemplate>(
+			Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+
+	private final String signature;
+	private final String name;
+	private final String query;
+	private final boolean function;
+
+	/** Nomes distintos dos parâmetros, na ordem em que aparecem. */
+	private final String[] names;
+
+	/** Posições JDBC (1-based) de cada parâmetro de {@link #names}. */
+	private final int[][] ordinals;
+
+	private final ImmutableMap<String, Integer> indexes;
+
+	private final FetchSizeAdvisor fetchAdvisor = new FetchSizeAdvisor();
+
+	private ProcedureTemplate(String signature, String name, String query, boolean function, List<String> occurrences) {
+		this.signature = signature;
+		this.name = name;
+		this.query = query;
+		this.function = function;
+
+		final Map<String, List<Integer>> positions = Maps.newLinkedHashMap();
+		int ordinal = 1;
+		for (String occurrence : occurrences) {
+			List<Integer> list = positions.get(occurrence);
+			if (list == null) {
+				list = new ArrayList<Integer>(1);
+				positions.put(occurrence, list);
+			}
+			list.add(ordinal++);
+		}
+
+		this.names = positions.keySet().toArray(new String[positions.size()]);
+		this.ordinals = new int[names.length][];
+		final Map<String, Integer> indexes = Maps.newHashMap();
+		for (int i = 0; i < names.length; i++) {
+			final List<Integer> list = positions.get(names[i]);
+			ordinals[i] = new int[list.size()];
+			for (int j = 0; j < ordinals[i].length; j++) {
+				ordinals[i][j] = list.get(j);
+			}
+			indexes.put(names[i], i);
+		}
+		this.indexes = ImmutableMap.copyOf(indexes);
+	}
+
+	/**
+	 * Compila a assinatura de uma procedure, no formato
+	 * NOMEDAPROCEDURE(:PARAM1,:PARAM2,...).
+	 *
+	 * @param procedure
+	 *            - assinatura da procedure
+	 * @return assinatura compilada (possivelmente vinda do cache)
+	 */
+	public static ProcedureTemplate compile(String procedure) {
+		Validator.GET.notNull(procedure).notEmpty(procedure);
+
+		final ProcedureTemplate cached = PROCEDURES.get(procedure);
+		if (cached != null) {
+			return cached;
+		}
+
+		final List<String> occurrences = new ArrayList<String>();
+		final String call = parse(procedure, occurrences);
+		return PROCEDURES.putIfAbsent(procedure, new ProcedureTemplate(procedure, name(call), String.format(
+				"{ call %s }", call), false, occurrences));
+	}
+
+	/**
+	 * Compila a assinatura de uma função, no formato :PARAM_RETORNO =
+	 * NOMEDAFUNCAO(:PARAM1,:PARAM2,...).
+	 *
+	 * @param function
+	 *            - assinatura da função
+	 * @return assinatura compilada (possivelmente vinda do cache)
+	 */
+	public static ProcedureTemplate compileFunction(String function) {
+		Validator.GET.notNull(function).notEmpty(function);
+
+		final ProcedureTemplate cached = FUNCTIONS.get(function);
+		if (cached != null) {
+			return cached;
+		}
+
+		final Matcher m = FUNCTION_RETURN.matcher(function);
+		if (!m.find()) {
+			// Não condiz com o formato esperado
+			throw new IllegalArgumentException(String.format("Parameter [%s] has illegal format.", function));
+		}
+
+		// O parâmetro de retorno ocupa a primeira posição
+		final List<String> occurrences = new ArrayList<String>();
+		parse(function.substring(0, m.end()), occurrences);
+		final String call = parse(function.substring(m.end()), occurrences);
+
+		return FUNCTIONS.putIfAbsent(function, new ProcedureTemplate(function, name(call), String.format(
+				"{ ? = call %s }", call), true, occurrences));
+	}
+
+	/**
+	 * Nome da procedure: a chamada sem a lista de parâmetros.
+	 */
+	private static String name(String call) {
+		final int parenthesis = call.indexOf('(');
+		return (parenthesis < 0 ? call : call.substring(0, parenthesis)).trim();
+	}
+
+	/**
+	 * Substitui cada parâmetro nomeado (:NOME) por '?' e acumula os nomes
+	 * encontrados em ordem.
+	 */
+	private static String parse(String signature, List<String> occurrences) {
+		final StringBuilder call = new StringBuilder(signature.length());
+		final int length = signature.length();
+		int i = 0;
+		while (i < length) {
+			final char c = signature.charAt(i);
+			if (c == ':' && i + 1 < length && isWordChar(signature.charAt(i + 1))) {
+				int end = i + 1;
+				while (end < length && isWordChar(signature.charAt(end))) {
+					end++;
+				}
+				occurrences.add(signature.substring(i + 1, end));
+				call.append('?');
+				i = end;
+			} else {
+				call.append(c);
+				i++;
+			}
+		}
+		return call.toString();
+	}
+
+	private static boolean isWordChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+	}
+
+	/**
+	 * Cria uma procedure a partir desta assinatura.
+	 *
+	 * @param session
+	 *            - sessão do Hibernate
+	 */
+	public Procedure bind(Session session) {
+		return Procedure.create(session, this, null);
+	}
+
+	/**
+	 * Cria uma procedure a partir desta assinatura cujo result set será
+	 * mapeado para a classe informada.
+	 *
+	 * @param session
+	 *            - sessão do Hibernate
+	 * @param clazz
+	 *            - classe do result set
+	 */
+	public Procedure bind(Session session, Class<?> clazz) {
+		Validator.GET.notNull(clazz);
+		return Procedure.create(session, this, clazz);
+	}
+
+	/**
+	 * Cria uma execução em lote a partir desta assinatura.
+	 *
+	 * @param session
+	 *            - sessão do Hibernate
+	 */
+	public ProcedureBatch batch(Session session) {
+		return ProcedureBatch.create(session, this);
+	}
+
+	public String getSignature() {
+		return signature;
+	}
+
+	/**
+	 * @return nome da procedure ou função, sem os parâmetros
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return query no formato de escape JDBC, ex.: { call SP(?, ?) }
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	public boolean isFunction() {
+		return function;
+	}
+
+	/**
+	 * @return quantidade de parâmetros distintos
+	 */
+	public int parameterCount() {
+		return names.length;
+	}
+
+	public String parameterName(int index) {
+		return names[index];
+	}
+
+	/**
+	 * @return índice do parâmetro ou -1 caso não exista
+	 */
+	public int indexOf(String parameter) {
+		final Integer index = indexes.get(parameter);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Posições JDBC do parâmetro. Um mesmo nome pode aparecer mais de uma vez
+	 * na assinatura.
+	 */
+	int[] ordinals(int index) {
+		return ordinals[index];
+	}
+
+	/**
+	 * @return primeira posição JDBC do parâmetro
+	 */
+	int ordinal(int index) {
+		return ordinals[index][0];
+	}
+
+	/**
+	 * Fetch size aprendido das execuções desta assinatura.
+	 */
+	FetchSizeAdvisor fetchAdvisor() {
+		return fetchAdvisor;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s -> %s %s", signature, query, Arrays.toString(names));
+	}
+}
@@ -0,0 +1,73 @@
+package br.com.bettercode.procedure;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Execuções em andamento, indexadas por {@link ProcedureKey}. A primeira
+ * thread a chegar executa a procedure; as chamadas concorrentes com a mesma
+ * chave aguardam e recebem o mesmo resultado (ou a mesma exceção). Cada
+ * chamada recebe sua própria cópia, com listas imutáveis, para que nenhuma
+ * altere as linhas vistas pelas outras.
+ *
+ * <p>
+ * A tabela é um {@link ConcurrentHashMap}: não há lock global, apenas a espera
+ * pela execução correspondente.
+ * </p>
+ */
+final class SingleFlight {
+
+	private static final ConcurrentMap<ProcedureKey, FutureTask<ProcedureResult>> IN_FLIGHT = new ConcurrentHashMap<ProcedureKey, FutureTask<ProcedureResult>>();
+
+	private SingleFlight() {
+	}
+
+	/**
+	 * Executa a chamada ou aguarda a execução já em andamento para a chave.
+	 *
+	 * @return cópia do resultado da execução
+	 */
+	static ProcedureResult execute(ProcedureKey key, Callable<ProcedureResult> call) {
+		final FutureTask<ProcedureResult> task = new FutureTask<ProcedureResult>(call);
+		final FutureTask<ProcedureResult> running = IN_FLIGHT.putIfAbsent(key, task);
+		if (running == null) {
+			try {
+				task.run();
+			} finally {
+				IN_FLIGHT.remove(key, task);
+			}
+			return get(task).copy();
+		}
+		return get(running).copy();
+	}
+
+	private static ProcedureResult get(FutureTask<ProcedureResult> task) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					// A execução compartilhada não é cancelada pela espera
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new CannotInvokeProcedureException("Error while executing procedure. " + cause.getMessage(), cause);
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package br.com.bettercode.procedure;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Coleção de valores associada a um único parâmetro de entrada: array SQL no
+ * Oracle (tipo coleção nomeado) e no JDBC padrão, table-valued parameter no
+ * SQL Server. A forma de associação é definida pelo dialeto (veja
+ * {@link ProcedureDialect#bindArray}).
+ *
+ * <pre>
+ * Procedure.create(session, &quot;sp_close_orders(:ids)&quot;).input(&quot;ids&quot;, SqlArray.of(&quot;ID_LIST&quot;, ids)).execute();
+ * </pre>
+ *
+ * Os valores são copiados na criação.
+ */
+public final class SqlArray {
+
+	private final String typeName;
+
+	private final Object[] values;
+
+	private SqlArray(String typeName, Object[] values) {
+		this.typeName = typeName;
+		this.values = values;
+	}
+
+	/**
+	 * Array cujo tipo é inferido dos elementos; suportado apenas pelo dialeto
+	 * JDBC padrão.
+	 */
+	public static SqlArray of(Collection<?> values) {
+		Validator.GET.notNull(values);
+		return new SqlArray(null, values.toArray());
+	}
+
+	/**
+	 * @param typeName
+	 *            - tipo coleção no Oracle, tipo tabela no SQL Server ou tipo
+	 *            dos elementos no JDBC padrão
+	 * @param values
+	 */
+	public static SqlArray of(String typeName, Collection<?> values) {
+		Validator.GET.notNull(values).notEmpty(typeName);
+		return new SqlArray(typeName, values.toArray());
+	}
+
+	/**
+	 * @return o valor, com coleções convertidas em array de tipo inferido
+	 */
+	static Object valueOf(Object value) {
+		return value instanceof Collection<?> ? of((Collection<?>) value) : value;
+	}
+
+	/**
+	 * @return nome do tipo no banco ou null caso deva ser inferido
+	 */
+	public String getTypeName() {
+		return typeName;
+	}
+
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * @return os valores; o array não deve ser alterado
+	 */
+	Object[] values() {
+		return values;
+	}
+
+	/**
+	 * @return tipo do primeiro elemento não nulo ou {@link SqlType#VARCHAR}
+	 *         caso todos sejam nulos
+	 */
+	public SqlType getElementType() {
+		for (Object value : values) {
+			if (value != null) {
+				return SqlType.fromType(value.getClass());
+			}
+		}
+		return SqlType.VARCHAR;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (typeName == null ? 0 : typeName.hashCode()) + Arrays.hashCode(values);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof SqlArray)) {
+			return false;
+		}
+		final SqlArray other = (SqlArray) obj;
+		return (typeName == null ? other.typeName == null : typeName.equals(other.typeName))
+				&& Arrays.equals(values, other.values);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s(%d)", typeName == null ? "ARRAY" : typeName, values.length);
+	}
+}
@@ -0,0 +1,116 @@
+package br.com.bettercode.procedure;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * SQL Server: procedures retornam result sets, não cursores de saída.
+ *
+ * <p>
+ * Coleções ({@link SqlArray}) são associadas como table-valued parameters de
+ * uma coluna, com o nome do tipo tabela informado. O driver da Microsoft é
+ * acessado por reflexão, pois não é dependência desta biblioteca.
+ * </p>
+ */
+public class SqlServerProcedureDialect extends ProcedureDialect {
+
+	private static final String DATA_TABLE = "com.microsoft.sqlserver.jdbc.SQLServerDataTable";
+
+	private static final String CALLABLE_STATEMENT = "com.microsoft.sqlserver.jdbc.SQLServerCallableStatement";
+
+	/**
+	 * Nome da coluna do table-valued parameter; o driver associa as colunas
+	 * pela posição.
+	 */
+	private static final String COLUMN = "value";
+
+	private volatile Driver driver;
+
+	@Override
+	public boolean supportsCursorOutput() {
+		return false;
+	}
+
+	@Override
+	public void bindArray(Connection connection, CallableStatement call, int ordinal, SqlArray array)
+			throws SQLException {
+		if (array.getTypeName() == null) {
+			throw new IllegalArgumentException(
+					"SQL Server table-valued parameters require the table type name; use SqlArray.of(typeName, values).");
+		}
+		final Driver driver = driver(call);
+		final Object statement = unwrap(call, driver.callableStatement);
+		if (statement == null) {
+			throw new SQLException(String.format("%s is not a SQL Server statement.", call));
+		}
+		try {
+			final Object table = driver.dataTable.newInstance();
+			driver.addColumnMetadata.invoke(table, COLUMN, array.getElementType().sqlType());
+			for (Object value : array.values()) {
+				driver.addRow.invoke(table, new Object[] { new Object[] { value } });
+			}
+			driver.setStructured.invoke(statement, ordinal, array.getTypeName(), table);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof SQLException) {
+				throw (SQLException) e.getCause();
+			}
+			throw new CannotInvokeProcedureException("Could not bind table-valued parameter " + array, e.getCause());
+		} catch (InstantiationException e) {
+			throw new CannotInvokeProcedureException("Could not bind table-valued parameter " + array, e);
+		} catch (IllegalAccessException e) {
+			throw new CannotInvokeProcedureException("Could not bind table-valued parameter " + array, e);
+		}
+	}
+
+	private Driver driver(CallableStatement call) {
+		Driver resolved = driver;
+		if (resolved == null) {
+			resolved = new Driver(call.getClass().getClassLoader());
+			driver = resolved;
+		}
+		return resolved;
+	}
+
+	/**
+	 * Classes e métodos do driver, resolvidos uma única vez.
+	 */
+	private static final class Driver {
+
+		final Class<?> dataTable;
+
+		final Class<?> callableStatement;
+
+		final Method addColumnMetadata;
+
+		final Method addRow;
+
+		final Method setStructured;
+
+		Driver(ClassLoader loader) {
+			try {
+				dataTable = load(DATA_TABLE, loader);
+				callableStatement = load(CALLABLE_STATEMENT, loader);
+				addColumnMetadata = dataTable.getMethod("addColumnMetadata", String.class, int.class);
+				addRow = dataTable.getMethod("addRow", Object[].class);
+				setStructured = callableStatement.getMethod("setStructured", int.class, String.class, dataTable);
+			} catch (ClassNotFoundException e) {
+				throw new UnsupportedOperationException(
+						"Table-valued parameters require the Microsoft SQL Server JDBC driver 6.0 or later.", e);
+			} catch (NoSuchMethodException e) {
+				throw new UnsupportedOperationException(
+						"Table-valued parameters require the Microsoft SQL Server JDBC driver 6.0 or later.", e);
+			}
+		}
+
+		private static Class<?> load(String name, ClassLoader loader) throws ClassNotFoundException {
+			try {
+				return Class.forName(name, false, loader);
+			} catch (ClassNotFoundException e) {
+				return Class.forName(name);
+			}
+		}
+	}
+}
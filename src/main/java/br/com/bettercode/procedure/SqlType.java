@@ -1,16 +1,67 @@
 package br.com.bettercode.procedure;
 
 import java.math.BigInteger;
-import java.sql.Types;
+import java.sql.Blob;
+import java.sql.Clob;
 import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import oracle.jdbc.driver.OracleTypes;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
+
 public enum SqlType {
 
 	BIGINT(Types.BIGINT, BigInteger.class), LONG(Types.BIGINT, Long.class), BOOLEAN(Types.BOOLEAN, Boolean.class), DATE(
 			Types.DATE, Date.class), DOUBLE(Types.DOUBLE, Double.class), FLOAT(Types.FLOAT, Float.class), INTEGER(
-			Types.INTEGER, Integer.class), VARCHAR(Types.VARCHAR, String.class), ORACLE_CURSOR(OracleTypes.CURSOR, Object.class);
+			Types.INTEGER, Integer.class), VARCHAR(Types.VARCHAR, String.class), ORACLE_CURSOR(OracleTypes.CURSOR, Object.class), TIMESTAMP(
+			Types.TIMESTAMP, Timestamp.class),
+
+	/**
+	 * Cursor de saída cujo tipo JDBC é definido pelo dialeto (veja
+	 * {@link ProcedureDialect#cursorType()}).
+	 */
+	CURSOR(Types.OTHER, null),
+
+	/**
+	 * Coleção associada a um parâmetro de entrada; a forma de associação
+	 * (array, table-valued parameter) é definida pelo dialeto (veja
+	 * {@link ProcedureDialect#bindArray}).
+	 */
+	ARRAY(Types.ARRAY, SqlArray.class),
+
+	/**
+	 * LOBs, retornados como locators: o conteúdo é lido sob demanda (veja
+	 * {@link ProcedureResult#getBinaryStream(String)} e {@link Lobs}).
+	 */
+	BLOB(Types.BLOB, Blob.class), CLOB(Types.CLOB, Clob.class);
+
+	/**
+	 * Tipo de cada classe declarada.
+	 */
+	private static final ImmutableMap<Class<?>, SqlType> DECLARED;
+
+	/**
+	 * Tipo das demais classes já resolvidas, como subclasses e implementações
+	 * do driver dos tipos declarados. As chaves são fracas, para não manter
+	 * carregadas as classes de um driver ou aplicação removidos do container.
+	 */
+	private static final ConcurrentMap<Class<?>, SqlType> RESOLVED = new MapMaker().weakKeys().makeMap();
+
+	static {
+		final Map<Class<?>, SqlType> declared = new HashMap<Class<?>, SqlType>();
+		for (SqlType t : values()) {
+			if (t.type != null && !declared.containsKey(t.type)) {
+				declared.put(t.type, t);
+			}
+		}
+		DECLARED = ImmutableMap.copyOf(declared);
+	}
 
 	private final Integer sqlType;
 	private final Class<?> type;
@@ -28,12 +79,48 @@ public enum SqlType {
 		return sqlType;
 	}
 
+	/**
+	 * @return se o parâmetro de saída é um cursor, que permanece aberto após
+	 *         a execução
+	 */
+	public final boolean isCursor() {
+		return this == ORACLE_CURSOR || this == CURSOR;
+	}
+
+	/**
+	 * @return se o parâmetro de saída é um LOB, lido pelo locator após a
+	 *         execução
+	 */
+	public final boolean isLob() {
+		return this == BLOB || this == CLOB;
+	}
+
 	static SqlType fromType(Class<?> type) {
 		if (type == null) {
 			throw new IllegalArgumentException("null type is invalid");
 		}
-		for (SqlType t : SqlType.values()) {
-			if (type.equals(t.type())) {
+		final SqlType declared = DECLARED.get(type);
+		if (declared != null) {
+			return declared;
+		}
+		final SqlType cached = RESOLVED.get(type);
+		if (cached != null) {
+			return cached;
+		}
+
+		// Subclasse de um tipo declarado; Object só é aceito exatamente
+		for (Class<?> c = type.getSuperclass(); c != null && c != Object.class; c = c.getSuperclass()) {
+			final SqlType t = DECLARED.get(c);
+			if (t != null) {
+				RESOLVED.putIfAbsent(type, t);
+				return t;
+			}
+		}
+
+		// Implementações do driver dos tipos declarados como interface
+		for (SqlType t : values()) {
+			if (t.type != null && t.type.isInterface() && t.type.isAssignableFrom(type)) {
+				RESOLVED.putIfAbsent(type, t);
 				return t;
 			}
 		}
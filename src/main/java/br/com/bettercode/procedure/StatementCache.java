@@ -0,0 +1,236 @@
+package br.com.bettercode.procedure;
+
+import java.lang.ref.WeakReference;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Cache LRU de {@link CallableStatement} preparados, um por conexão JDBC. Os
+ * statements pertencem à conexão em que foram preparados e só são usados ou
+ * fechados pela execução que detém essa conexão.
+ *
+ * <p>
+ * O tamanho de cada cache é definido pela propriedade de sistema
+ * {@value #SIZE_PROPERTY} (padrão {@value #DEFAULT_SIZE}; 0 desabilita). Os
+ * statements são fechados ao sair do cache ou em {@link #close(Connection)},
+ * que {@link StatementCacheConnectionProvider} chama ao devolver cada conexão.
+ * </p>
+ *
+ * <p>
+ * Sem esse connection provider, os statements de uma conexão fechada (ou
+ * devolvida a um pool que entrega proxies) são fechados junto com ela, e o
+ * cache correspondente é descartado por uma varredura das conexões fechadas,
+ * feita quando a quantidade de caches dobra. Pools que entregam a própria
+ * conexão física mantêm os statements abertos enquanto a conexão existir, até
+ * {@value #DEFAULT_SIZE} (ou o tamanho configurado) por conexão. Pools que
+ * entregam um proxy novo a cada empréstimo não têm acertos: os statements de
+ * um proxy não podem ser usados por outro.
+ * </p>
+ */
+public final class StatementCache {
+
+	public static final String SIZE_PROPERTY = "br.com.bettercode.procedure.statementCacheSize";
+
+	public static final int DEFAULT_SIZE = 32;
+
+	private static final int SIZE = Integer.getInteger(SIZE_PROPERTY, DEFAULT_SIZE);
+
+	private static final Map<Connection, StatementCache> CACHES = new WeakHashMap<Connection, StatementCache>();
+
+	/**
+	 * Último cache usado pela thread; evita o lock enquanto a thread continua
+	 * na mesma conexão.
+	 */
+	private static final ThreadLocal<WeakReference<StatementCache>> LAST = new ThreadLocal<WeakReference<StatementCache>>();
+
+	private static final int MIN_SWEEP_THRESHOLD = 16;
+
+	/** Quantidade de caches a partir da qual as conexões fechadas são varridas. */
+	private static int sweepThreshold = MIN_SWEEP_THRESHOLD;
+
+	private static final AtomicLong HITS = new AtomicLong();
+	private static final AtomicLong MISSES = new AtomicLong();
+	private static final AtomicLong EVICTIONS = new AtomicLong();
+
+	private static Logger log = Logger.getLogger(StatementCache.class);
+
+	/** Referência fraca: o valor do mapa não impede a coleta da chave. */
+	private final WeakReference<Connection> connection;
+
+	/** Removido de CACHES; a thread que ainda o referencia busca outro. */
+	private volatile boolean discarded = false;
+
+	private final LinkedHashMap<String, CallableStatement> statements = new LinkedHashMap<String, CallableStatement>(
+			16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CallableStatement> eldest) {
+			if (size() > SIZE) {
+				EVICTIONS.incrementAndGet();
+				closeQuietly(eldest.getValue());
+				return true;
+			}
+			return false;
+		}
+	};
+
+	private StatementCache(Connection connection) {
+		this.connection = new WeakReference<Connection>(connection);
+	}
+
+	/**
+	 * @return cache da conexão ou null caso o cache esteja desabilitado
+	 */
+	static StatementCache of(Connection connection) {
+		if (SIZE <= 0) {
+			return null;
+		}
+		final WeakReference<StatementCache> last = LAST.get();
+		StatementCache cache = last == null ? null : last.get();
+		if (cache == null || cache.connection.get() != connection || cache.discarded) {
+			final boolean sweep;
+			synchronized (CACHES) {
+				cache = CACHES.get(connection);
+				if (cache == null) {
+					cache = new StatementCache(connection);
+					CACHES.put(connection, cache);
+				}
+				sweep = CACHES.size() >= sweepThreshold;
+				if (sweep) {
+					sweepThreshold = Integer.MAX_VALUE;
+				}
+			}
+			LAST.set(new WeakReference<StatementCache>(cache));
+			if (sweep) {
+				discardClosed();
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Descarta os caches das conexões já fechadas. Os statements foram
+	 * fechados com a conexão, que não pertence mais a esta execução, portanto
+	 * não são tocados. As conexões são consultadas fora do lock, por uma única
+	 * thread por vez, e a próxima varredura ocorre quando a quantidade de
+	 * caches restantes dobrar.
+	 */
+	private static void discardClosed() {
+		final List<Connection> connections;
+		synchronized (CACHES) {
+			connections = new ArrayList<Connection>(CACHES.keySet());
+		}
+		final List<Connection> closed = new ArrayList<Connection>();
+		for (Connection connection : connections) {
+			if (isClosed(connection)) {
+				closed.add(connection);
+			}
+		}
+		synchronized (CACHES) {
+			for (Connection connection : closed) {
+				final StatementCache cache = CACHES.remove(connection);
+				if (cache != null) {
+					cache.discarded = true;
+				}
+			}
+			sweepThreshold = Math.max(MIN_SWEEP_THRESHOLD, CACHES.size() * 2);
+		}
+	}
+
+	private static boolean isClosed(Connection connection) {
+		try {
+			return connection.isClosed();
+		} catch (SQLException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Retira do cache um statement para a query (ou prepara um novo). O
+	 * statement deve ser devolvido com {@link #checkin(String, CallableStatement)}
+	 * ao fim da execução.
+	 */
+	synchronized CallableStatement checkout(String query) throws SQLException {
+		final CallableStatement statement = statements.remove(query);
+		if (statement == null) {
+			MISSES.incrementAndGet();
+			return connection.get().prepareCall(query);
+		}
+
+		HITS.incrementAndGet();
+		statement.clearParameters();
+		return statement;
+	}
+
+	/**
+	 * Devolve o statement ao cache, possivelmente removendo (e fechando) o
+	 * menos usado.
+	 */
+	synchronized void checkin(String query, CallableStatement statement) {
+		final CallableStatement previous = statements.put(query, statement);
+		if (previous != null && previous != statement) {
+			closeQuietly(previous);
+		}
+	}
+
+	private synchronized void clear() {
+		for (CallableStatement statement : statements.values()) {
+			closeQuietly(statement);
+		}
+		statements.clear();
+	}
+
+	/**
+	 * Fecha todos os statements mantidos para a conexão. Deve ser chamado por
+	 * quem detém a conexão, antes de fechá-la ou devolvê-la ao pool.
+	 *
+	 * @see StatementCacheConnectionProvider
+	 */
+	public static void close(Connection connection) {
+		Validator.GET.notNull(connection);
+		final StatementCache cache;
+		synchronized (CACHES) {
+			cache = CACHES.remove(connection);
+		}
+		if (cache != null) {
+			cache.discarded = true;
+			cache.clear();
+		}
+	}
+
+	static void closeQuietly(Statement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			log.warn("Error while closing statement. " + e.getMessage(), e);
+		}
+	}
+
+	public static int getSize() {
+		return SIZE;
+	}
+
+	public static long getHits() {
+		return HITS.get();
+	}
+
+	public static long getMisses() {
+		return MISSES.get();
+	}
+
+	public static long getEvictions() {
+		return EVICTIONS.get();
+	}
+}
@@ -0,0 +1,63 @@
+package br.com.bettercode.procedure;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.Environment;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.connection.ConnectionProviderFactory;
+
+/**
+ * Connection provider que fecha os statements do {@link StatementCache} de
+ * cada conexão antes de devolvê-la, delegando ao provider configurado na
+ * propriedade {@value #DELEGATE_PROPERTY} do Hibernate (sem ela, ao provider
+ * que o Hibernate escolheria). Assim nenhum statement fica aberto em uma
+ * conexão ociosa do pool.
+ *
+ * <pre>
+ * hibernate.connection.provider_class=br.com.bettercode.procedure.StatementCacheConnectionProvider
+ * br.com.bettercode.procedure.connectionProvider=org.hibernate.connection.C3P0ConnectionProvider
+ * </pre>
+ */
+public class StatementCacheConnectionProvider implements ConnectionProvider {
+
+	public static final String DELEGATE_PROPERTY = "br.com.bettercode.procedure.connectionProvider";
+
+	private ConnectionProvider delegate;
+
+	@Override
+	public void configure(Properties props) throws HibernateException {
+		final Properties delegated = new Properties();
+		delegated.putAll(props);
+		final String provider = delegated.getProperty(DELEGATE_PROPERTY);
+		if (provider == null || provider.equals(getClass().getName())) {
+			delegated.remove(Environment.CONNECTION_PROVIDER);
+		} else {
+			delegated.setProperty(Environment.CONNECTION_PROVIDER, provider);
+		}
+		this.delegate = ConnectionProviderFactory.newConnectionProvider(delegated);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return delegate.getConnection();
+	}
+
+	@Override
+	public void closeConnection(Connection conn) throws SQLException {
+		StatementCache.close(conn);
+		delegate.closeConnection(conn);
+	}
+
+	@Override
+	public void close() throws HibernateException {
+		delegate.close();
+	}
+
+	@Override
+	public boolean supportsAggressiveRelease() {
+		return delegate.supportsAggressiveRelease();
+	}
+}
@@ -0,0 +1,293 @@
+package br.com.bettercode.resulttransformer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Leitura tipada de uma coluna, escolhida uma única vez por result set a partir
+ * do tipo SQL da coluna e do tipo da propriedade. Cada célula é lida uma única
+ * vez, pelo índice; valores nulos não são atribuídos, preservando o valor
+ * padrão de propriedades primitivas.
+ */
+enum ColumnReader {
+
+	INT {
+		@Override
+		void read(ResultSet rs, int index, Object bean, PropertyBinding binding) throws SQLException,
+				IllegalAccessException {
+			final int value = rs.getInt(index);
+			if (!rs.wasNull()) {
+				set(bean, binding, value);
+			}
+		}
+
+		@Override
+		void spill(ResultSet rs, int index, DataOutput out) throws SQLException, IOException {
+			final int value = rs.getInt(index);
+			out.writeBoolean(!rs.wasNull());
+			out.writeInt(value);
+		}
+
+		@Override
+		void unspill(DataInput in, Object bean, PropertyBinding binding) throws IOException, IllegalAccessException {
+			final boolean present = in.readBoolean();
+			final int value = in.readInt();
+			if (present) {
+				set(bean, binding, value);
+			}
+		}
+
+		private void set(Object bean, PropertyBinding binding, int value) throws IllegalAccessException {
+			if (binding.type().isPrimitive()) {
+				binding.accessor().setInt(bean, value);
+			} else {
+				binding.accessor().set(bean, Integer.valueOf(value));
+			}
+		}
+	},
+	LONG {
+		@Override
+		void read(ResultSet rs, int index, Object bean, PropertyBinding binding) throws SQLException,
+				IllegalAccessException {
+			final long value = rs.getLong(index);
+			if (!rs.wasNull()) {
+				set(bean, binding, value);
+			}
+		}
+
+		@Override
+		void spill(ResultSet rs, int index, DataOutput out) throws SQLException, IOException {
+			final long value = rs.getLong(index);
+			out.writeBoolean(!rs.wasNull());
+			out.writeLong(value);
+		}
+
+		@Override
+		void unspill(DataInput in, Object bean, PropertyBinding binding) throws IOException, IllegalAccessException {
+			final boolean present = in.readBoolean();
+			final long value = in.readLong();
+			if (present) {
+				set(bean, binding, value);
+			}
+		}
+
+		private void set(Object bean, PropertyBinding binding, long value) throws IllegalAccessException {
+			if (binding.type().isPrimitive()) {
+				binding.accessor().setLong(bean, value);
+			} else {
+				binding.accessor().set(bean, Long.valueOf(value));
+			}
+		}
+	},
+	DOUBLE {
+		@Override
+		void read(ResultSet rs, int index, Object bean, PropertyBinding binding) throws SQLException,
+				IllegalAccessException {
+			final double value = rs.getDouble(index);
+			if (!rs.wasNull()) {
+				set(bean, binding, value);
+			}
+		}
+
+		@Override
+		void spill(ResultSet rs, int index, DataOutput out) throws SQLException, IOException {
+			final double value = rs.getDouble(index);
+			out.writeBoolean(!rs.wasNull());
+			out.writeDouble(value);
+		}
+
+		@Override
+		void unspill(DataInput in, Object bean, PropertyBinding binding) throws IOException, IllegalAccessException {
+			final boolean present = in.readBoolean();
+			final double value = in.readDouble();
+			if (present) {
+				set(bean, binding, value);
+			}
+		}
+
+		private void set(Object bean, PropertyBinding binding, double value) throws IllegalAccessException {
+			if (binding.type().isPrimitive()) {
+				binding.accessor().setDouble(bean, value);
+			} else {
+				binding.accessor().set(bean, Double.valueOf(value));
+			}
+		}
+	},
+	STRING {
+		@Override
+		void read(ResultSet rs, int index, Object bean, PropertyBinding binding) throws SQLException,
+				IllegalAccessException {
+			final String value = rs.getString(index);
+			if (value != null) {
+				binding.accessor().set(bean, value);
+			}
+		}
+
+		@Override
+		void spill(ResultSet rs, int index, DataOutput out) throws SQLException, IOException {
+			final String value = rs.getString(index);
+			out.writeBoolean(value != null);
+			if (value != null) {
+				SpillCodec.writeString(out, value);
+			}
+		}
+
+		@Override
+		void unspill(DataInput in, Object bean, PropertyBinding binding) throws IOException, IllegalAccessException {
+			if (in.readBoolean()) {
+				binding.accessor().set(bean, SpillCodec.readString(in));
+			}
+		}
+	},
+	/**
+	 * Propriedades {@link Blob} e {@link InputStream}: o locator é mantido e o
+	 * conteúdo, lido sob demanda.
+	 */
+	BLOB {
+		@Override
+		void read(ResultSet rs, int index, Object bean, PropertyBinding binding) throws SQLException,
+				IllegalAccessException {
+			final Blob value = rs.getBlob(index);
+			if (value != null) {
+				binding.accessor().set(bean, binding.type() == InputStream.class ? value.getBinaryStream() : value);
+			}
+		}
+
+		@Override
+		void spill(ResultSet rs, int index, DataOutput out) {
+			throw cannotSpill();
+		}
+
+		@Override
+		void unspill(DataInput in, Object bean, PropertyBinding binding) {
+			throw cannotSpill();
+		}
+	},
+	/**
+	 * Propriedades {@link Clob} e {@link Reader}: o locator é mantido e o
+	 * conteúdo, lido sob demanda.
+	 */
+	CLOB {
+		@Override
+		void read(ResultSet rs, int index, Object bean, PropertyBinding binding) throws SQLException,
+				IllegalAccessException {
+			final Clob value = rs.getClob(index);
+			if (value != null) {
+				binding.accessor().set(bean, binding.type() == Reader.class ? value.getCharacterStream() : value);
+			}
+		}
+
+		@Override
+		void spill(ResultSet rs, int index, DataOutput out) {
+			throw cannotSpill();
+		}
+
+		@Override
+		void unspill(DataInput in, Object bean, PropertyBinding binding) {
+			throw cannotSpill();
+		}
+	},
+	OBJECT {
+		@Override
+		void read(ResultSet rs, int index, Object bean, PropertyBinding binding) throws SQLException,
+				IllegalAccessException {
+			final Object value = rs.getObject(index);
+			if (value != null) {
+				binding.set(bean, value);
+			}
+		}
+
+		@Override
+		void spill(ResultSet rs, int index, DataOutput out) throws SQLException, IOException {
+			SpillCodec.writeObject(out, rs.getObject(index));
+		}
+
+		@Override
+		void unspill(DataInput in, Object bean, PropertyBinding binding) throws IOException, IllegalAccessException {
+			final Object value = SpillCodec.readObject(in);
+			if (value != null) {
+				binding.set(bean, value);
+			}
+		}
+	};
+
+	/**
+	 * Lê a coluna e atribui o valor à propriedade.
+	 */
+	abstract void read(ResultSet rs, int index, Object bean, PropertyBinding binding) throws SQLException,
+			IllegalAccessException;
+
+	/**
+	 * Grava o valor da coluna, lido como em {@link #read}, para leitura
+	 * posterior com {@link #unspill}.
+	 */
+	abstract void spill(ResultSet rs, int index, DataOutput out) throws SQLException, IOException;
+
+	/**
+	 * Lê o valor gravado por {@link #spill} e o atribui à propriedade.
+	 */
+	abstract void unspill(DataInput in, Object bean, PropertyBinding binding) throws IOException,
+			IllegalAccessException;
+
+	private static ResultSetMapperException cannotSpill() {
+		return new ResultSetMapperException("LOB columns cannot be spilled; map them with a row handler instead.");
+	}
+
+	/**
+	 * Escolhe a leitura para o tipo SQL da coluna e o tipo da propriedade.
+	 * Combinações não previstas são lidas com getObject e convertidas.
+	 * 
+	 * @param sqlType
+	 *            - tipo SQL da coluna ({@link Types})
+	 * @param scale
+	 *            - escala da coluna; colunas NUMERIC/DECIMAL de escala 0 são
+	 *            tratadas como inteiras
+	 * @param fieldType
+	 *            - tipo da propriedade
+	 */
+	static ColumnReader of(int sqlType, int scale, Class<?> fieldType) {
+		final boolean integral = isIntegral(sqlType)
+				|| ((sqlType == Types.NUMERIC || sqlType == Types.DECIMAL) && scale == 0);
+		if ((fieldType == Integer.TYPE || fieldType == Integer.class) && integral) {
+			return INT;
+		}
+		if ((fieldType == Long.TYPE || fieldType == Long.class) && integral) {
+			return LONG;
+		}
+		if ((fieldType == Double.TYPE || fieldType == Double.class) && (isIntegral(sqlType) || isDecimal(sqlType))) {
+			return DOUBLE;
+		}
+		if (fieldType == String.class && (isCharacter(sqlType) || sqlType == Types.CLOB || sqlType == Types.NCLOB)) {
+			return STRING;
+		}
+		if (fieldType == Blob.class || fieldType == InputStream.class) {
+			return BLOB;
+		}
+		if (fieldType == Clob.class || fieldType == Reader.class) {
+			return CLOB;
+		}
+		return OBJECT;
+	}
+
+	private static boolean isIntegral(int sqlType) {
+		return sqlType == Types.TINYINT || sqlType == Types.SMALLINT || sqlType == Types.INTEGER
+				|| sqlType == Types.BIGINT;
+	}
+
+	private static boolean isDecimal(int sqlType) {
+		return sqlType == Types.FLOAT || sqlType == Types.REAL || sqlType == Types.DOUBLE
+				|| sqlType == Types.NUMERIC || sqlType == Types.DECIMAL;
+	}
+
+	private static boolean isCharacter(int sqlType) {
+		return sqlType == Types.CHAR || sqlType == Types.VARCHAR || sqlType == Types.LONGVARCHAR;
+	}
+}
@@ -0,0 +1,501 @@
+package br.com.bettercode.resulttransformer;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result set lido por colunas, para procedures analíticas com muitas linhas:
+ * cada coluna é um array primitivo ({@code int[]}, {@code long[]} ou
+ * {@code double[]}) com um bitmap de nulos, e textos são codificados em
+ * dicionário. Nenhum objeto é criado por linha.
+ *
+ * <p>
+ * O tipo de cada coluna é escolhido a partir de {@link ResultSetMetaData}:
+ * </p>
+ * <ul>
+ * <li>inteiros de até 32 bits e booleanos: {@link ColumnType#INT};</li>
+ * <li>BIGINT e NUMERIC/DECIMAL sem casas decimais de até 18 dígitos:
+ * {@link ColumnType#LONG};</li>
+ * <li>datas e horários: {@link ColumnType#TIMESTAMP}, em milissegundos;</li>
+ * <li>demais numéricos: {@link ColumnType#DOUBLE};</li>
+ * <li>os outros tipos: {@link ColumnType#STRING}.</li>
+ * </ul>
+ *
+ * <p>
+ * Linhas e colunas são indexadas a partir de 0.
+ * </p>
+ *
+ * @see ResultSetMapper#mapColumnar(ResultSet)
+ */
+public final class ColumnarResult {
+
+	/**
+	 * Representação de uma coluna.
+	 */
+	public enum ColumnType {
+		INT, LONG, DOUBLE, TIMESTAMP, STRING
+	}
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final Column[] columns;
+
+	private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+	private int rowCount;
+
+	private ColumnarResult(Column[] columns) {
+		this.columns = columns;
+		for (int i = 0; i < columns.length; i++) {
+			final String key = columns[i].name.toUpperCase();
+			if (!indexes.containsKey(key)) {
+				indexes.put(key, i);
+			}
+		}
+	}
+
+	/**
+	 * Lê todas as linhas do result set, sem fechá-lo.
+	 */
+	static ColumnarResult read(ResultSet rs) throws SQLException {
+		final ResultSetMetaData metaData = rs.getMetaData();
+		final int capacity = Math.max(INITIAL_CAPACITY, rs.getFetchSize());
+		final Column[] columns = new Column[metaData.getColumnCount()];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = Column.of(metaData, i + 1, capacity);
+		}
+
+		final ColumnarResult result = new ColumnarResult(columns);
+		int row = 0;
+		while (rs.next()) {
+			for (int i = 0; i < columns.length; i++) {
+				columns[i].read(rs, i + 1, row);
+			}
+			row++;
+		}
+		result.rowCount = row;
+		return result;
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	public String getColumnName(int column) {
+		return column(column).name;
+	}
+
+	public ColumnType getColumnType(int column) {
+		return column(column).type;
+	}
+
+	/**
+	 * @param label
+	 *            - nome da coluna, sem diferenciar maiúsculas
+	 * @return índice da coluna
+	 * @throws IllegalArgumentException
+	 *             caso a coluna não exista
+	 */
+	public int getColumnIndex(String label) {
+		final Integer index = label == null ? null : indexes.get(label.toUpperCase());
+		if (index == null) {
+			throw new IllegalArgumentException(String.format("Column %s does not exist.", label));
+		}
+		return index;
+	}
+
+	public boolean isNull(int row, int column) {
+		return column(column).isNull(checkRow(row));
+	}
+
+	/**
+	 * @return valor da coluna {@link ColumnType#INT}; 0 quando nulo
+	 */
+	public int getInt(int row, int column) {
+		return ints(column)[checkRow(row)];
+	}
+
+	/**
+	 * @return valor da coluna {@link ColumnType#INT}, {@link ColumnType#LONG}
+	 *         ou {@link ColumnType#TIMESTAMP}; 0 quando nulo
+	 */
+	public long getLong(int row, int column) {
+		final Column c = column(column);
+		checkRow(row);
+		if (c instanceof IntColumn) {
+			return ((IntColumn) c).values[row];
+		}
+		if (c instanceof LongColumn) {
+			return ((LongColumn) c).values[row];
+		}
+		throw notOfType(c, ColumnType.LONG);
+	}
+
+	/**
+	 * @return valor de qualquer coluna numérica; 0 quando nulo
+	 */
+	public double getDouble(int row, int column) {
+		final Column c = column(column);
+		checkRow(row);
+		if (c instanceof DoubleColumn) {
+			return ((DoubleColumn) c).values[row];
+		}
+		if (c.type == ColumnType.TIMESTAMP) {
+			throw notOfType(c, ColumnType.DOUBLE);
+		}
+		return getLong(row, column);
+	}
+
+	/**
+	 * @return valor da coluna {@link ColumnType#TIMESTAMP} ou null
+	 */
+	public Timestamp getTimestamp(int row, int column) {
+		final Column c = column(column);
+		if (c.type != ColumnType.TIMESTAMP) {
+			throw notOfType(c, ColumnType.TIMESTAMP);
+		}
+		return c.isNull(checkRow(row)) ? null : new Timestamp(((LongColumn) c).values[row]);
+	}
+
+	/**
+	 * @return texto da coluna {@link ColumnType#STRING}, ou representação
+	 *         textual das demais; null quando nulo
+	 */
+	public String getString(int row, int column) {
+		final Object value = getObject(row, column);
+		return value == null ? null : value.toString();
+	}
+
+	/**
+	 * @return valor da célula como objeto, para usos não críticos; null quando
+	 *         nulo
+	 */
+	public Object getObject(int row, int column) {
+		final Column c = column(column);
+		return c.isNull(checkRow(row)) ? null : c.get(row);
+	}
+
+	/**
+	 * Array da coluna {@link ColumnType#INT}, sem cópia. Contém ao menos
+	 * {@link #getRowCount()} posições e não deve ser alterado.
+	 */
+	public int[] ints(int column) {
+		final Column c = column(column);
+		if (!(c instanceof IntColumn)) {
+			throw notOfType(c, ColumnType.INT);
+		}
+		return ((IntColumn) c).values;
+	}
+
+	/**
+	 * Array da coluna {@link ColumnType#LONG} ou {@link ColumnType#TIMESTAMP},
+	 * sem cópia. Contém ao menos {@link #getRowCount()} posições e não deve ser
+	 * alterado.
+	 */
+	public long[] longs(int column) {
+		final Column c = column(column);
+		if (!(c instanceof LongColumn)) {
+			throw notOfType(c, ColumnType.LONG);
+		}
+		return ((LongColumn) c).values;
+	}
+
+	/**
+	 * Array da coluna {@link ColumnType#DOUBLE}, sem cópia. Contém ao menos
+	 * {@link #getRowCount()} posições e não deve ser alterado.
+	 */
+	public double[] doubles(int column) {
+		final Column c = column(column);
+		if (!(c instanceof DoubleColumn)) {
+			throw notOfType(c, ColumnType.DOUBLE);
+		}
+		return ((DoubleColumn) c).values;
+	}
+
+	/**
+	 * Códigos da coluna {@link ColumnType#STRING} no dicionário (veja
+	 * {@link #dictionary(int)}), sem cópia; -1 quando nulo.
+	 */
+	public int[] codes(int column) {
+		return stringColumn(column).codes;
+	}
+
+	/**
+	 * @return valores distintos da coluna {@link ColumnType#STRING}, na ordem
+	 *         de ocorrência
+	 */
+	public List<String> dictionary(int column) {
+		return Collections.unmodifiableList(stringColumn(column).dictionary);
+	}
+
+	private StringColumn stringColumn(int column) {
+		final Column c = column(column);
+		if (!(c instanceof StringColumn)) {
+			throw notOfType(c, ColumnType.STRING);
+		}
+		return (StringColumn) c;
+	}
+
+	private Column column(int column) {
+		if (column < 0 || column >= columns.length) {
+			throw new IndexOutOfBoundsException(String.format("Column %d of %d.", column, columns.length));
+		}
+		return columns[column];
+	}
+
+	private int checkRow(int row) {
+		if (row < 0 || row >= rowCount) {
+			throw new IndexOutOfBoundsException(String.format("Row %d of %d.", row, rowCount));
+		}
+		return row;
+	}
+
+	private static IllegalArgumentException notOfType(Column column, ColumnType type) {
+		return new IllegalArgumentException(String.format("Column %s is %s, not %s.", column.name, column.type,
+				type));
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ColumnarResult(%d rows x %d columns)", rowCount, columns.length);
+	}
+
+	/**
+	 * Coluna com bitmap de nulos; os arrays crescem 50% quando cheios.
+	 */
+	private abstract static class Column {
+
+		final String name;
+
+		final ColumnType type;
+
+		long[] nulls;
+
+		Column(String name, ColumnType type, int capacity) {
+			this.name = name;
+			this.type = type;
+			this.nulls = new long[(capacity + 63) >>> 6];
+		}
+
+		static Column of(ResultSetMetaData metaData, int index, int capacity) throws SQLException {
+			final String label = metaData.getColumnLabel(index);
+			final String name = label == null || label.length() == 0 ? metaData.getColumnName(index) : label;
+			switch (metaData.getColumnType(index)) {
+			case Types.BIT:
+			case Types.BOOLEAN:
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return new IntColumn(name, capacity);
+			case Types.BIGINT:
+				return new LongColumn(name, ColumnType.LONG, capacity);
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				// Oracle informa NUMBER sem precisão com escala -127
+				final int precision = metaData.getPrecision(index);
+				if (metaData.getScale(index) == 0 && precision > 0 && precision <= 18) {
+					return precision <= 9 ? new IntColumn(name, capacity) : new LongColumn(name, ColumnType.LONG,
+							capacity);
+				}
+				return new DoubleColumn(name, capacity);
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return new DoubleColumn(name, capacity);
+			case Types.DATE:
+			case Types.TIME:
+			case Types.TIMESTAMP:
+				return new LongColumn(name, ColumnType.TIMESTAMP, capacity);
+			default:
+				return new StringColumn(name, capacity);
+			}
+		}
+
+		final void read(ResultSet rs, int index, int row) throws SQLException {
+			if (row == capacity()) {
+				final int grown = row + (row >> 1) + 1;
+				grow(grown);
+				nulls = Arrays.copyOf(nulls, (grown + 63) >>> 6);
+			}
+			if (!readValue(rs, index, row)) {
+				nulls[row >>> 6] |= 1L << row;
+			}
+		}
+
+		final boolean isNull(int row) {
+			return (nulls[row >>> 6] & (1L << row)) != 0;
+		}
+
+		/**
+		 * @return false quando o valor é nulo
+		 */
+		abstract boolean readValue(ResultSet rs, int index, int row) throws SQLException;
+
+		abstract int capacity();
+
+		abstract void grow(int capacity);
+
+		abstract Object get(int row);
+	}
+
+	private static final class IntColumn extends Column {
+
+		int[] values;
+
+		IntColumn(String name, int capacity) {
+			super(name, ColumnType.INT, capacity);
+			values = new int[capacity];
+		}
+
+		@Override
+		boolean readValue(ResultSet rs, int index, int row) throws SQLException {
+			values[row] = rs.getInt(index);
+			return !rs.wasNull();
+		}
+
+		@Override
+		int capacity() {
+			return values.length;
+		}
+
+		@Override
+		void grow(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		Object get(int row) {
+			return Integer.valueOf(values[row]);
+		}
+	}
+
+	private static final class LongColumn extends Column {
+
+		long[] values;
+
+		LongColumn(String name, ColumnType type, int capacity) {
+			super(name, type, capacity);
+			values = new long[capacity];
+		}
+
+		@Override
+		boolean readValue(ResultSet rs, int index, int row) throws SQLException {
+			if (type == ColumnType.TIMESTAMP) {
+				final Timestamp value = rs.getTimestamp(index);
+				values[row] = value == null ? 0L : value.getTime();
+				return value != null;
+			}
+			values[row] = rs.getLong(index);
+			return !rs.wasNull();
+		}
+
+		@Override
+		int capacity() {
+			return values.length;
+		}
+
+		@Override
+		void grow(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		Object get(int row) {
+			return type == ColumnType.TIMESTAMP ? new Timestamp(values[row]) : Long.valueOf(values[row]);
+		}
+	}
+
+	private static final class DoubleColumn extends Column {
+
+		double[] values;
+
+		DoubleColumn(String name, int capacity) {
+			super(name, ColumnType.DOUBLE, capacity);
+			values = new double[capacity];
+		}
+
+		@Override
+		boolean readValue(ResultSet rs, int index, int row) throws SQLException {
+			values[row] = rs.getDouble(index);
+			return !rs.wasNull();
+		}
+
+		@Override
+		int capacity() {
+			return values.length;
+		}
+
+		@Override
+		void grow(int capacity) {
+			values = Arrays.copyOf(values, capacity);
+		}
+
+		@Override
+		Object get(int row) {
+			return Double.valueOf(values[row]);
+		}
+	}
+
+	/**
+	 * Textos codificados em dicionário: cada valor distinto é guardado uma
+	 * única vez.
+	 */
+	private static final class StringColumn extends Column {
+
+		int[] codes;
+
+		final List<String> dictionary = new ArrayList<String>();
+
+		private final Map<String, Integer> lookup = new HashMap<String, Integer>();
+
+		StringColumn(String name, int capacity) {
+			super(name, ColumnType.STRING, capacity);
+			codes = new int[capacity];
+		}
+
+		@Override
+		boolean readValue(ResultSet rs, int index, int row) throws SQLException {
+			final String value = rs.getString(index);
+			if (value == null) {
+				codes[row] = -1;
+				return false;
+			}
+			Integer code = lookup.get(value);
+			if (code == null) {
+				code = dictionary.size();
+				dictionary.add(value);
+				lookup.put(value, code);
+			}
+			codes[row] = code;
+			return true;
+		}
+
+		@Override
+		int capacity() {
+			return codes.length;
+		}
+
+		@Override
+		void grow(int capacity) {
+			codes = Arrays.copyOf(codes, capacity);
+		}
+
+		@Override
+		Object get(int row) {
+			return dictionary.get(codes[row]);
+		}
+	}
+}
@@ -0,0 +1,382 @@
+package br.com.bettercode.resulttransformer;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Gera, em tempo de compilação, um {@link GeneratedRowMapper} para cada
+ * classe com propriedades anotadas com {@link Columns}. O processador é
+ * registrado em <code>META-INF/services</code> e executado pelo javac sempre
+ * que esta biblioteca estiver no classpath da compilação.
+ *
+ * <p>
+ * Classes apenas com {@link javax.persistence.Column} ou
+ * {@link javax.persistence.Embedded}, como entidades JPA, só são geradas com a
+ * opção <code>-A{@value #JPA_OPTION}=true</code> do javac. O mapeador de uma
+ * classe gerada sempre cobre as três anotações.
+ * </p>
+ *
+ * <p>
+ * O mapeador escreve diretamente nas propriedades não privadas e não finais e
+ * chama os setters públicos quando a estratégia em uso é
+ * {@link FieldAccessors#CGLIB}, com a mesma semântica das estratégias de
+ * {@link FieldAccessors}. Propriedades privadas sem setter, ou qualquer
+ * propriedade privada sob {@link FieldAccessors#REFLECTION}, não podem ser
+ * escritas por código gerado e continuam com reflexão. Como
+ * {@link FieldAccessors#REFLECTION} é a estratégia padrão, beans com
+ * propriedades privadas continuam escritos por reflexão na configuração
+ * padrão; o mapeador evita apenas a reflexão na instanciação e no cálculo dos
+ * aliases. Classes abstratas, privadas, internas não estáticas ou sem
+ * construtor padrão acessível não são geradas e seguem mapeadas por reflexão.
+ * </p>
+ */
+@SupportedAnnotationTypes("br.com.bettercode.resulttransformer.Columns")
+@SupportedOptions(ColumnsProcessor.JPA_OPTION)
+public final class ColumnsProcessor extends AbstractProcessor {
+
+	public static final String JPA_OPTION = "br.com.bettercode.resulttransformer.jpa";
+
+	private static final String COLUMNS = Columns.class.getName();
+
+	private static final String COLUMN = "javax.persistence.Column";
+
+	private static final String EMBEDDED = "javax.persistence.Embedded";
+
+	/**
+	 * Com {@value #JPA_OPTION}, também as classes apenas com anotações JPA.
+	 */
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		final Set<String> types = new LinkedHashSet<String>(super.getSupportedAnnotationTypes());
+		if (jpa()) {
+			types.add(COLUMN);
+			types.add(EMBEDDED);
+		}
+		return types;
+	}
+
+	private boolean jpa() {
+		return processingEnv != null && Boolean.parseBoolean(processingEnv.getOptions().get(JPA_OPTION));
+	}
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		final Set<TypeElement> types = new LinkedHashSet<TypeElement>();
+		for (String name : jpa() ? new String[] { COLUMNS, COLUMN, EMBEDDED } : new String[] { COLUMNS }) {
+			final TypeElement annotation = processingEnv.getElementUtils().getTypeElement(name);
+			if (annotation == null) {
+				continue;
+			}
+			for (Element field : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (field.getKind() == ElementKind.FIELD && field.getEnclosingElement() instanceof TypeElement) {
+					types.add((TypeElement) field.getEnclosingElement());
+				}
+			}
+		}
+		for (TypeElement type : types) {
+			final String reason = unsupported(type);
+			if (reason != null) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+						String.format("%s %s; it will be mapped by reflection.", type.getQualifiedName(), reason), type);
+				continue;
+			}
+			try {
+				generate(type);
+			} catch (IOException e) {
+				processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+						"Could not generate row mapper: " + e.getMessage(), type);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return motivo pelo qual a classe não tem mapeador gerado; null se tiver
+	 */
+	private String unsupported(TypeElement type) {
+		if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+			return "is not a concrete class";
+		}
+		for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+			if (element.getModifiers().contains(Modifier.PRIVATE)) {
+				return "is private";
+			}
+			if (element.getEnclosingElement() instanceof TypeElement
+					&& !element.getModifiers().contains(Modifier.STATIC)) {
+				return "is an inner class";
+			}
+		}
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+				return null;
+			}
+		}
+		return "has no accessible default constructor";
+	}
+
+	private void generate(TypeElement type) throws IOException {
+		final List<VariableElement> fields = new ArrayList<VariableElement>();
+		for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+			if (annotation(field, COLUMNS) != null || annotation(field, COLUMN) != null
+					|| annotation(field, EMBEDDED) != null) {
+				fields.add(field);
+			}
+		}
+
+		final String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+		final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+		final String name = binaryName.substring(packageName.length() == 0 ? 0 : packageName.length() + 1)
+				+ GeneratedRowMappers.SUFFIX;
+		final String bean = type.getQualifiedName().toString();
+
+		final PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(
+				packageName.length() == 0 ? name : packageName + "." + name, type).openWriter());
+		try {
+			if (packageName.length() > 0) {
+				out.printf("package %s;%n%n", packageName);
+			}
+			out.printf("/**%n * Mapeamento de {@link %s} gerado por {@link %s}.%n */%n", bean,
+					ColumnsProcessor.class.getName());
+			out.printf("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })%n");
+			out.printf("public final class %s implements %s<%s> {%n%n", name, GeneratedRowMapper.class.getName(), bean);
+
+			final StringBuilder names = new StringBuilder();
+			final StringBuilder types = new StringBuilder();
+			final StringBuilder columns = new StringBuilder();
+			final StringBuilder column = new StringBuilder();
+			final StringBuilder direct = new StringBuilder();
+			final StringBuilder setter = new StringBuilder();
+			final StringBuilder embedded = new StringBuilder();
+			for (int i = 0; i < fields.size(); i++) {
+				final VariableElement field = fields.get(i);
+				final String separator = i == 0 ? "" : ", ";
+				names.append(separator).append(literal(field.getSimpleName().toString()));
+				types.append(separator).append(accessible(field.asType()) ? classLiteral(field.asType()) : "null");
+				columns.append(separator).append(columnsLiteral(field));
+				column.append(separator).append(columnLiteral(field));
+				direct.append(separator).append(writesDirectly(field));
+				setter.append(separator).append(setter(type, field) != null);
+				embedded.append(separator).append(annotation(field, EMBEDDED) != null);
+			}
+			out.printf("\tprivate static final String[] FIELDS = { %s };%n%n", names);
+			out.printf("\tprivate static final Class<?>[] TYPES = { %s };%n%n", types);
+			out.printf("\tprivate static final String[][] COLUMNS = { %s };%n%n", columns);
+			out.printf("\tprivate static final String[] COLUMN = { %s };%n%n", column);
+			out.printf("\tprivate static final boolean[] DIRECT = { %s };%n%n", direct);
+			out.printf("\tprivate static final boolean[] SETTER = { %s };%n%n", setter);
+			out.printf("\tprivate static final boolean[] EMBEDDED = { %s };%n%n", embedded);
+
+			out.printf("\tpublic %s newInstance() {%n\t\treturn new %s();%n\t}%n%n", bean, bean);
+			out.printf("\tpublic String[] fields() {%n\t\treturn FIELDS;%n\t}%n%n");
+			out.printf("\tpublic Class<?>[] types() {%n\t\treturn TYPES;%n\t}%n%n");
+			out.printf("\tpublic String[][] columns() {%n\t\treturn COLUMNS;%n\t}%n%n");
+			out.printf("\tpublic String[] column() {%n\t\treturn COLUMN;%n\t}%n%n");
+			out.printf("\tpublic boolean writesDirectly(int property) {%n\t\treturn DIRECT[property];%n\t}%n%n");
+			out.printf("\tpublic boolean hasSetter(int property) {%n\t\treturn SETTER[property];%n\t}%n%n");
+			out.printf("\tpublic boolean embedded(int property) {%n\t\treturn EMBEDDED[property];%n\t}%n%n");
+
+			out.printf("\tpublic void set(%s bean, int property, Object value) {%n\t\tswitch (property) {%n", bean);
+			for (int i = 0; i < fields.size(); i++) {
+				final VariableElement field = fields.get(i);
+				if (writesDirectly(field)) {
+					out.printf("\t\tcase %d:%n\t\t\tbean.%s = (%s) value;%n\t\t\treturn;%n", i, field.getSimpleName(),
+							castType(field.asType()));
+				}
+			}
+			out.printf("\t\tdefault:%n\t\t\tthrow new IllegalArgumentException(\"Property \" + property"
+					+ " + \" is not written directly.\");%n\t\t}%n\t}%n%n");
+
+			out.printf("\tpublic void invokeSetter(%s bean, int property, Object value) {%n\t\tswitch (property) {%n",
+					bean);
+			for (int i = 0; i < fields.size(); i++) {
+				final VariableElement field = fields.get(i);
+				final ExecutableElement method = setter(type, field);
+				if (method != null) {
+					out.printf("\t\tcase %d:%n\t\t\tbean.%s((%s) value);%n\t\t\treturn;%n", i, method.getSimpleName(),
+							castType(field.asType()));
+				}
+			}
+			out.printf("\t\tdefault:%n\t\t\tthrow new IllegalArgumentException(\"Property \" + property"
+					+ " + \" has no setter.\");%n\t\t}%n\t}%n%n");
+
+			primitiveSetter(out, type, fields, bean, TypeKind.INT, "Int", "int", "Integer");
+			out.printf("%n");
+			primitiveSetter(out, type, fields, bean, TypeKind.LONG, "Long", "long", "Long");
+			out.printf("%n");
+			primitiveSetter(out, type, fields, bean, TypeKind.DOUBLE, "Double", "double", "Double");
+			out.printf("}%n");
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Variante sem boxing, para as propriedades do tipo primitivo; as demais
+	 * recebem o valor convertido em objeto.
+	 */
+	private void primitiveSetter(PrintWriter out, TypeElement type, List<VariableElement> fields, String bean,
+			TypeKind kind, String suffix, String primitive, String wrapper) {
+		out.printf("\tpublic void set%s(%s bean, int property, %s value) {%n\t\tswitch (property) {%n", suffix, bean,
+				primitive);
+		for (int i = 0; i < fields.size(); i++) {
+			final VariableElement field = fields.get(i);
+			if (field.asType().getKind() == kind && writesDirectly(field)) {
+				out.printf("\t\tcase %d:%n\t\t\tbean.%s = value;%n\t\t\treturn;%n", i, field.getSimpleName());
+			}
+		}
+		out.printf("\t\tdefault:%n\t\t\tset(bean, property, %s.valueOf(value));%n\t\t}%n\t}%n", wrapper);
+	}
+
+	private boolean writesDirectly(VariableElement field) {
+		final Set<Modifier> modifiers = field.getModifiers();
+		if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)
+				|| modifiers.contains(Modifier.STATIC)) {
+			return false;
+		}
+		final TypeMirror fieldType = field.asType();
+		return fieldType.getKind() != TypeKind.TYPEVAR && accessible(fieldType);
+	}
+
+	/**
+	 * Mesma busca de {@link FieldAccessors#CGLIB}: setter público, não
+	 * estático, declarado ou herdado, com o tipo da propriedade.
+	 * 
+	 * @return setter que o mapeador gerado pode chamar; null se não houver
+	 */
+	private ExecutableElement setter(TypeElement type, VariableElement field) {
+		if (field.getModifiers().contains(Modifier.STATIC) || !accessible(field.asType())) {
+			return null;
+		}
+		final String name = field.getSimpleName().toString();
+		final String setter = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+			if (method.getSimpleName().contentEquals(setter) && method.getParameters().size() == 1
+					&& method.getModifiers().contains(Modifier.PUBLIC)
+					&& !method.getModifiers().contains(Modifier.STATIC)
+					&& processingEnv.getTypeUtils().isSameType(
+							processingEnv.getTypeUtils().erasure(method.getParameters().get(0).asType()),
+							processingEnv.getTypeUtils().erasure(field.asType()))) {
+				return visible(type, (TypeElement) method.getEnclosingElement()) ? method : null;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return se os métodos públicos de declaring podem ser chamados a partir
+	 *         do pacote de type
+	 */
+	private boolean visible(TypeElement type, TypeElement declaring) {
+		return declaring.getModifiers().contains(Modifier.PUBLIC)
+				|| processingEnv.getElementUtils().getPackageOf(declaring).equals(
+						processingEnv.getElementUtils().getPackageOf(type));
+	}
+
+	/**
+	 * @return se o tipo pode ser referenciado a partir do pacote da classe
+	 */
+	private boolean accessible(TypeMirror type) {
+		if (type.getKind().isPrimitive()) {
+			return true;
+		}
+		if (type.getKind() == TypeKind.ARRAY) {
+			return accessible(((ArrayType) type).getComponentType());
+		}
+		if (type.getKind() == TypeKind.TYPEVAR) {
+			return accessible(processingEnv.getTypeUtils().erasure(type));
+		}
+		if (type.getKind() != TypeKind.DECLARED) {
+			return false;
+		}
+		for (Element element = ((DeclaredType) type).asElement(); element instanceof TypeElement; element = element
+				.getEnclosingElement()) {
+			if (element.getModifiers().contains(Modifier.PRIVATE)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String classLiteral(TypeMirror type) {
+		return processingEnv.getTypeUtils().erasure(type) + ".class";
+	}
+
+	private String castType(TypeMirror type) {
+		if (type.getKind().isPrimitive()) {
+			return processingEnv.getTypeUtils().boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind()))
+					.getQualifiedName().toString();
+		}
+		return processingEnv.getTypeUtils().erasure(type).toString();
+	}
+
+	private String columnsLiteral(VariableElement field) {
+		final AnnotationMirror columns = annotation(field, COLUMNS);
+		if (columns == null) {
+			return "null";
+		}
+		final StringBuilder literal = new StringBuilder("{ ");
+		final List<?> names = (List<?>) value(columns, "names");
+		for (int i = 0; i < names.size(); i++) {
+			literal.append(i == 0 ? "" : ", ").append(literal((String) ((AnnotationValue) names.get(i)).getValue()));
+		}
+		return literal.append(" }").toString();
+	}
+
+	private String columnLiteral(VariableElement field) {
+		final AnnotationMirror column = annotation(field, COLUMN);
+		return column == null ? "null" : literal((String) value(column, "name"));
+	}
+
+	private String literal(String value) {
+		return processingEnv.getElementUtils().getConstantExpression(value);
+	}
+
+	private static AnnotationMirror annotation(Element element, String name) {
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(name)) {
+				return mirror;
+			}
+		}
+		return null;
+	}
+
+	private Object value(AnnotationMirror mirror, String name) {
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv
+				.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(name)) {
+				return entry.getValue().getValue();
+			}
+		}
+		return null;
+	}
+}
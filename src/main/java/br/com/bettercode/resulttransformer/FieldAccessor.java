@@ -0,0 +1,18 @@
+package br.com.bettercode.resulttransformer;
+
+/**
+ * Atribui valores a uma propriedade de um objeto mapeado. As variantes
+ * primitivas evitam boxing quando a propriedade é de tipo primitivo.
+ * 
+ * @see FieldAccessorFactory
+ */
+public interface FieldAccessor {
+
+	void set(Object bean, Object value) throws IllegalAccessException;
+
+	void setInt(Object bean, int value) throws IllegalAccessException;
+
+	void setLong(Object bean, long value) throws IllegalAccessException;
+
+	void setDouble(Object bean, double value) throws IllegalAccessException;
+}
@@ -0,0 +1,14 @@
+package br.com.bettercode.resulttransformer;
+
+import java.lang.reflect.Field;
+
+/**
+ * Estratégia de acesso às propriedades das classes mapeadas. Os acessores são
+ * criados uma única vez, quando o plano de mapeamento da classe é montado.
+ * 
+ * @see FieldAccessors
+ */
+public interface FieldAccessorFactory {
+
+	FieldAccessor create(Field field);
+}
@@ -0,0 +1,138 @@
+package br.com.bettercode.resulttransformer;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import net.sf.cglib.reflect.FastClass;
+import net.sf.cglib.reflect.FastMethod;
+
+import br.com.bettercode.procedure.Validator;
+
+/**
+ * Estratégias de acesso disponíveis e a estratégia em uso pelos mapeadores.
+ * A estratégia deve ser definida na inicialização da aplicação, antes do
+ * primeiro mapeamento; os planos já montados mantêm seus acessores.
+ */
+public final class FieldAccessors {
+
+	/**
+	 * Escrita direta na propriedade via reflexão. O acesso é liberado uma
+	 * única vez e propriedades primitivas recebem valores sem boxing.
+	 */
+	public static final FieldAccessorFactory REFLECTION = new FieldAccessorFactory() {
+		@Override
+		public FieldAccessor create(Field field) {
+			field.setAccessible(true);
+			return new ReflectionAccessor(field);
+		}
+	};
+
+	/**
+	 * Invoca o setter público da propriedade por meio de classe gerada pelo
+	 * cglib, sem reflexão. Propriedades sem setter público são acessadas via
+	 * {@link #REFLECTION}.
+	 */
+	public static final FieldAccessorFactory CGLIB = new FieldAccessorFactory() {
+		@Override
+		public FieldAccessor create(Field field) {
+			final Method setter = setter(field);
+			if (setter == null) {
+				return REFLECTION.create(field);
+			}
+			return new CglibAccessor(FastClass.create(field.getDeclaringClass()).getMethod(setter));
+		}
+	};
+
+	private static volatile FieldAccessorFactory factory = REFLECTION;
+
+	private FieldAccessors() {
+	}
+
+	public static FieldAccessorFactory getFactory() {
+		return factory;
+	}
+
+	public static void setFactory(FieldAccessorFactory factory) {
+		Validator.GET.notNull(factory);
+		FieldAccessors.factory = factory;
+	}
+
+	static FieldAccessor create(Field field) {
+		return factory.create(field);
+	}
+
+	private static Method setter(Field field) {
+		final String name = field.getName();
+		final String setter = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		try {
+			final Method method = field.getDeclaringClass().getMethod(setter, field.getType());
+			return Modifier.isStatic(method.getModifiers()) ? null : method;
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static final class ReflectionAccessor implements FieldAccessor {
+
+		private final Field field;
+
+		ReflectionAccessor(Field field) {
+			this.field = field;
+		}
+
+		@Override
+		public void set(Object bean, Object value) throws IllegalAccessException {
+			field.set(bean, value);
+		}
+
+		@Override
+		public void setInt(Object bean, int value) throws IllegalAccessException {
+			field.setInt(bean, value);
+		}
+
+		@Override
+		public void setLong(Object bean, long value) throws IllegalAccessException {
+			field.setLong(bean, value);
+		}
+
+		@Override
+		public void setDouble(Object bean, double value) throws IllegalAccessException {
+			field.setDouble(bean, value);
+		}
+	}
+
+	private static final class CglibAccessor implements FieldAccessor {
+
+		private final FastMethod setter;
+
+		CglibAccessor(FastMethod setter) {
+			this.setter = setter;
+		}
+
+		@Override
+		public void set(Object bean, Object value) {
+			try {
+				setter.invoke(bean, new Object[] { value });
+			} catch (InvocationTargetException e) {
+				throw new ResultSetMapperException("Error while invoking " + setter.getName(), e.getCause());
+			}
+		}
+
+		@Override
+		public void setInt(Object bean, int value) {
+			set(bean, value);
+		}
+
+		@Override
+		public void setLong(Object bean, long value) {
+			set(bean, value);
+		}
+
+		@Override
+		public void setDouble(Object bean, double value) {
+			set(bean, value);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package br.com.bettercode.resulttransformer;
+
+/**
+ * Mapeamento de uma classe gerado em tempo de compilação por
+ * {@link ColumnsProcessor}: instanciação sem reflexão, tabelas de aliases já
+ * calculadas, escrita direta nas propriedades acessíveis e chamada direta dos
+ * setters públicos.
+ *
+ * <p>
+ * A classe gerada fica no pacote da classe mapeada, com o nome
+ * <code>&lt;Classe&gt;_RowMapper</code>, e é usada automaticamente por
+ * {@link ResultSetMapper} e {@link MappedResultTransformer} quando presente no
+ * classpath. As propriedades são indexadas na ordem de declaração; os arrays
+ * retornados são compartilhados e não devem ser alterados.
+ * </p>
+ *
+ * @param <T>
+ *            - tipo da classe mapeada
+ */
+public interface GeneratedRowMapper<T> {
+
+	T newInstance();
+
+	/**
+	 * @return nome de cada propriedade
+	 */
+	String[] fields();
+
+	/**
+	 * @return tipo de cada propriedade
+	 */
+	Class<?>[] types();
+
+	/**
+	 * @return nomes de {@link Columns} de cada propriedade; null se não anotada
+	 */
+	String[][] columns();
+
+	/**
+	 * @return nome de {@link javax.persistence.Column} de cada propriedade;
+	 *         null se não anotada
+	 */
+	String[] column();
+
+	/**
+	 * Propriedades privadas ou finais não são escritas diretamente.
+	 */
+	boolean writesDirectly(int property);
+
+	/**
+	 * @return se a propriedade tem setter público que o mapeador pode chamar
+	 */
+	boolean hasSetter(int property);
+
+	/**
+	 * @return se a propriedade é anotada com {@link javax.persistence.Embedded}
+	 */
+	boolean embedded(int property);
+
+	void set(T bean, int property, Object value);
+
+	/**
+	 * Atribui o valor pelo setter da propriedade.
+	 */
+	void invokeSetter(T bean, int property, Object value);
+
+	void setInt(T bean, int property, int value);
+
+	void setLong(T bean, int property, long value);
+
+	void setDouble(T bean, int property, double value);
+}
@@ -0,0 +1,137 @@
+package br.com.bettercode.resulttransformer;
+
+import java.lang.reflect.Field;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Localiza o {@link GeneratedRowMapper} de uma classe e monta as associações
+ * das suas propriedades. Sem mapeador gerado, os planos seguem com reflexão.
+ */
+final class GeneratedRowMappers {
+
+	private static Logger log = Logger.getLogger(GeneratedRowMappers.class);
+
+	static final String SUFFIX = "_RowMapper";
+
+	private GeneratedRowMappers() {
+	}
+
+	/**
+	 * @return mapeador gerado para a classe ou null se não houver
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> GeneratedRowMapper<T> find(Class<T> type) {
+		final ClassLoader loader = type.getClassLoader();
+		if (loader == null) {
+			return null;
+		}
+		try {
+			final Class<?> mapper = Class.forName(type.getName() + SUFFIX, true, loader);
+			if (!GeneratedRowMapper.class.isAssignableFrom(mapper)) {
+				log.warn(String.format("%s does not implement %s; mapping %s by reflection.", mapper.getName(),
+						GeneratedRowMapper.class.getSimpleName(), type.getName()));
+				return null;
+			}
+			return (GeneratedRowMapper<T>) mapper.newInstance();
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (LinkageError e) {
+			log.warn(String.format("Could not load generated mapper of %s; mapping by reflection.", type.getName()), e);
+			return null;
+		} catch (InstantiationException e) {
+			log.warn(String.format("Could not create generated mapper of %s; mapping by reflection.", type.getName()), e);
+			return null;
+		} catch (IllegalAccessException e) {
+			log.warn(String.format("Could not create generated mapper of %s; mapping by reflection.", type.getName()), e);
+			return null;
+		}
+	}
+
+	static Object newInstance(Class<?> type, GeneratedRowMapper<?> mapper) throws InstantiationException,
+			IllegalAccessException {
+		return mapper != null ? mapper.newInstance() : type.newInstance();
+	}
+
+	/**
+	 * Associação da propriedade com a mesma semântica da estratégia de
+	 * {@link FieldAccessors} em uso: {@link FieldAccessors#REFLECTION} escreve
+	 * no campo e {@link FieldAccessors#CGLIB} chama o setter, se houver. O
+	 * mapeador gerado faz a escrita ou a chamada quando pode; campos privados
+	 * sem setter aplicável e estratégias próprias seguem com a estratégia.
+	 */
+	static PropertyBinding binding(Class<?> type, GeneratedRowMapper<?> mapper, int property) {
+		final FieldAccessorFactory factory = FieldAccessors.getFactory();
+		if (factory == FieldAccessors.CGLIB && mapper.hasSetter(property)) {
+			return new PropertyBinding(new GeneratedAccessor(mapper, property, true), mapper.types()[property]);
+		}
+		if ((factory == FieldAccessors.REFLECTION || factory == FieldAccessors.CGLIB)
+				&& mapper.writesDirectly(property)) {
+			return new PropertyBinding(new GeneratedAccessor(mapper, property, false), mapper.types()[property]);
+		}
+		final String name = mapper.fields()[property];
+		try {
+			final Field field = type.getDeclaredField(name);
+			return new PropertyBinding(field);
+		} catch (NoSuchFieldException e) {
+			throw new ResultSetMapperException(String.format(
+					"Generated mapper of %s refers to missing field %s; recompile the class.", type.getName(), name), e);
+		}
+	}
+
+	/**
+	 * Acessor que delega ao mapeador gerado: escrita direta ou chamada do
+	 * setter.
+	 */
+	private static final class GeneratedAccessor implements FieldAccessor {
+
+		private final GeneratedRowMapper<Object> mapper;
+
+		private final int property;
+
+		private final boolean setter;
+
+		@SuppressWarnings("unchecked")
+		GeneratedAccessor(GeneratedRowMapper<?> mapper, int property, boolean setter) {
+			this.mapper = (GeneratedRowMapper<Object>) mapper;
+			this.property = property;
+			this.setter = setter;
+		}
+
+		@Override
+		public void set(Object bean, Object value) {
+			if (setter) {
+				mapper.invokeSetter(bean, property, value);
+			} else {
+				mapper.set(bean, property, value);
+			}
+		}
+
+		@Override
+		public void setInt(Object bean, int value) {
+			if (setter) {
+				mapper.invokeSetter(bean, property, value);
+			} else {
+				mapper.setInt(bean, property, value);
+			}
+		}
+
+		@Override
+		public void setLong(Object bean, long value) {
+			if (setter) {
+				mapper.invokeSetter(bean, property, value);
+			} else {
+				mapper.setLong(bean, property, value);
+			}
+		}
+
+		@Override
+		public void setDouble(Object bean, double value) {
+			if (setter) {
+				mapper.invokeSetter(bean, property, value);
+			} else {
+				mapper.setDouble(bean, property, value);
+			}
+		}
+	}
+}
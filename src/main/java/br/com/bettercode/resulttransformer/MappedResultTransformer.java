@@ -1,5 +1,6 @@
 package br.com.bettercode.resulttransformer;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Field;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
@@ -8,9 +9,12 @@ import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.persistence.Column;
 import javax.persistence.Embedded;
@@ -25,6 +29,7 @@ import org.springframework.jdbc.support.JdbcUtils;
 import br.com.bettercode.procedure.Validator;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 /**
@@ -37,13 +42,27 @@ public final class MappedResultTransformer<T> implements ResultTransformer, RowM
 
 	private static final long serialVersionUID = 1L;
 
+	private static final ConcurrentMap<Class<?>, TransformPlan> PLANS = new ConcurrentHashMap<Class<?>, TransformPlan>();
+
+	static {
+		ConvertUtils.register(new JodaDateTimeConverter(), DateTime.class);
+	}
+
 	private final Class<?> clazz;
 
+	private final transient TransformPlan plan;
+
+	/** Última resolução de aliases, reutilizada enquanto o array for o mesmo. */
+	private transient volatile Resolution lastResolution;
+
+	/** Colunas do último result set mapeado por {@link #mapRow}. */
+	private transient volatile ResultSetColumns lastColumns;
+
 	public MappedResultTransformer(Class<?> clazz) {
 		super();
 		Validator.GET.notNull(clazz);
 		this.clazz = clazz;
-		ConvertUtils.register(new JodaDateTimeConverter(), DateTime.class);
+		this.plan = plan(clazz);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -53,86 +72,255 @@ public final class MappedResultTransformer<T> implements ResultTransformer, RowM
 
 	public Object transformTuple(Object[] data, String[] columnNames) {
 		try {
-			final Map<String, Field> allFileds = new HashMap<String, Field>();
-			final Object bean = (this.clazz).newInstance();
+			Resolution resolution = this.lastResolution;
+			if (resolution == null || resolution.columnNames != columnNames) {
+				resolution = new Resolution(plan(), columnNames);
+				this.lastResolution = resolution;
+			}
+			return resolution.newBean(data);
+		} catch (Exception e) {
+			throw new IllegalArgumentException(e);
+		}
 
-			allFileds.putAll(fieldsAnnotatedWithColumn(this.clazz));
-			allFileds.putAll(fieldsAnnotatedWithColumns(this.clazz));
+	}
 
-			scanResult(data, columnNames, allFileds, bean);
+	@SuppressWarnings("unchecked")
+	@Override
+	public T mapRow(ResultSet resultSet, int rowNum) throws SQLException {
+		ResultSetColumns columns = this.lastColumns;
+		if (columns == null || !columns.readFrom(resultSet)) {
+			columns = new ResultSetColumns(resultSet, columns);
+			this.lastColumns = columns;
+		}
 
-			// transform complex objects
-			final Map<String, Field> embeddedFields = fieldMapWithEmbedded(this.clazz);
+		final int columnCount = columns.columnNames.length - 1;
+		final Object[] data = new Object[columnCount + 1];
+		for (int index = 1; index <= columnCount; index++) {
+			data[index] = JdbcUtils.getResultSetValue(resultSet, index);
+		}
+
+		return (T)transformTuple(data, columns.columnNames);
+	}
+
+	/**
+	 * O plano não é serializado; após a desserialização é recuperado do cache.
+	 */
+	private TransformPlan plan() {
+		return plan != null ? plan : plan(clazz);
+	}
 
-			for (String key : embeddedFields.keySet()) {
+	private static TransformPlan plan(Class<?> type) {
+		TransformPlan plan = PLANS.get(type);
+		if (plan == null) {
+			plan = new TransformPlan(type, new HashSet<Class<?>>());
+			final TransformPlan previous = PLANS.putIfAbsent(type, plan);
+			if (previous != null) {
+				plan = previous;
+			}
+		}
+		return plan;
+	}
 
-				Field embedField = embeddedFields.get(key);
+	/**
+	 * Plano imutável de mapeamento de uma classe: propriedades indexadas pelo
+	 * nome da coluna e planos das propriedades {@link Embedded}. As
+	 * propriedades vêm do {@link GeneratedRowMapper} da classe, quando houver.
+	 */
+	private static final class TransformPlan {
 
-				final Map<String, Field> embedFields = new HashMap<String, Field>();
-				
-				final Object embedBean = embedField.getType().newInstance();
+		final Class<?> type;
 
-				embeddedFields.putAll(fieldsAnnotatedWithColumn(embedField.getType()));
-				embeddedFields.putAll(fieldsAnnotatedWithColumns(embedField.getType()));
+		final GeneratedRowMapper<?> generated;
 
-				scanResult(data, columnNames, embedFields, embedBean);
+		final ImmutableMap<String, PropertyBinding> fields;
 
-				// sets the embedded.
-				embedField.setAccessible(true);
-				embedField.set(bean, ConvertUtils.convert(embedBean, embedField.getType()));
+		final FieldAccessor[] embeddedFields;
+
+		final TransformPlan[] embedded;
+
+		TransformPlan(Class<?> type, Set<Class<?>> visiting) {
+			if (!visiting.add(type)) {
+				throw new IllegalArgumentException(String.format("Cyclic @Embedded mapping in %s", type));
+			}
+			this.type = type;
+			this.generated = GeneratedRowMappers.find(type);
+			this.fields = generated != null ? generatedFields(type, generated) : annotatedFields(type);
+
+			final List<PropertyBinding> embeddedFields = generated != null ? generatedEmbedded(type, generated)
+					: annotatedEmbedded(type);
+			this.embeddedFields = new FieldAccessor[embeddedFields.size()];
+			this.embedded = new TransformPlan[embeddedFields.size()];
+			for (int i = 0; i < embedded.length; i++) {
+				this.embeddedFields[i] = embeddedFields.get(i).accessor();
+				this.embedded[i] = new TransformPlan(embeddedFields.get(i).type(), visiting);
 			}
 
-			return bean;
-		} catch (Exception e) {
-			throw new IllegalArgumentException(e);
+			visiting.remove(type);
 		}
 
-	}
+		private static ImmutableMap<String, PropertyBinding> annotatedFields(Class<?> type) {
+			final Map<String, Field> fields = new HashMap<String, Field>();
+			fields.putAll(fieldsAnnotatedWithColumn(type));
+			fields.putAll(fieldsAnnotatedWithColumns(type));
+
+			// Uma única associação por propriedade, ainda que tenha vários aliases
+			final Map<Field, PropertyBinding> bindings = new HashMap<Field, PropertyBinding>();
+			final Map<String, PropertyBinding> aliases = new HashMap<String, PropertyBinding>();
+			for (Map.Entry<String, Field> entry : fields.entrySet()) {
+				PropertyBinding binding = bindings.get(entry.getValue());
+				if (binding == null) {
+					binding = new PropertyBinding(entry.getValue());
+					bindings.put(entry.getValue(), binding);
+				}
+				aliases.put(entry.getKey(), binding);
+			}
+			return ImmutableMap.copyOf(aliases);
+		}
 
-	@SuppressWarnings("unchecked")
-	@Override
-	public T mapRow(ResultSet resultSet, int rowNum) throws SQLException {
-		final ResultSetMetaData metaData = resultSet.getMetaData();
-		int columnCount = metaData.getColumnCount();
-		final Object[] data = new Object[columnCount+1];
-		final String[] columnNames = new String[columnCount+1];
-		
-		for (int index = 1; index <= columnCount; index++) {
-			data[index] = JdbcUtils.getResultSetValue(resultSet, index);
-			columnNames[index] = JdbcUtils.lookupColumnName(metaData, index);
+		/**
+		 * Mesma precedência de {@link #annotatedFields}: aliases de
+		 * {@link Columns} prevalecem sobre os de {@link Column}.
+		 */
+		private static ImmutableMap<String, PropertyBinding> generatedFields(Class<?> type,
+				GeneratedRowMapper<?> generated) {
+			final String[] column = generated.column();
+			final String[][] columns = generated.columns();
+			final Map<String, PropertyBinding> columnAliases = new HashMap<String, PropertyBinding>();
+			final Map<String, PropertyBinding> columnsAliases = new HashMap<String, PropertyBinding>();
+			for (int i = 0; i < column.length; i++) {
+				if (column[i] == null && columns[i] == null) {
+					continue;
+				}
+				final PropertyBinding binding = GeneratedRowMappers.binding(type, generated, i);
+				if (column[i] != null) {
+					columnAliases.put(column[i], binding);
+				}
+				if (columns[i] != null) {
+					for (String alias : columns[i]) {
+						columnsAliases.put(alias, binding);
+					}
+				}
+			}
+			columnAliases.putAll(columnsAliases);
+			return ImmutableMap.copyOf(columnAliases);
+		}
+
+		private static List<PropertyBinding> annotatedEmbedded(Class<?> type) {
+			final List<PropertyBinding> bindings = Lists.newArrayList();
+			for (Field field : fieldsWithEmbedded(type)) {
+				bindings.add(new PropertyBinding(field));
+			}
+			return bindings;
 		}
 
-		return (T)transformTuple(data, columnNames);
+		private static List<PropertyBinding> generatedEmbedded(Class<?> type, GeneratedRowMapper<?> generated) {
+			final List<PropertyBinding> bindings = Lists.newArrayList();
+			for (int i = 0; i < generated.fields().length; i++) {
+				if (generated.embedded(i)) {
+					bindings.add(GeneratedRowMappers.binding(type, generated, i));
+				}
+			}
+			return bindings;
+		}
 	}
-	
-	private void scanResult(Object[] data, String[] columnNames, final Map<String, Field> fields, final Object bean)
-			throws IllegalAccessException {
 
-		final Iterator<String> it = Arrays.asList(columnNames).iterator();
+	/**
+	 * Resolução de um plano para um array de aliases: propriedade de cada
+	 * posição da tupla.
+	 */
+	private static final class Resolution {
+
+		final String[] columnNames;
+
+		final Class<?> type;
+
+		final GeneratedRowMapper<?> generated;
+
+		final PropertyBinding[] fields;
 
-		for (Object obj : data) {
-			final Field field = fields.get(it.next());
-			if (field == null) {
-				continue;
+		final FieldAccessor[] embeddedFields;
+
+		final Resolution[] embedded;
+
+		Resolution(TransformPlan plan, String[] columnNames) {
+			this.columnNames = columnNames;
+			this.type = plan.type;
+			this.generated = plan.generated;
+			this.fields = new PropertyBinding[columnNames.length];
+			for (int i = 0; i < columnNames.length; i++) {
+				fields[i] = columnNames[i] == null ? null : plan.fields.get(columnNames[i]);
 			}
-			if (obj != null) {
-				field.setAccessible(true);
-				field.set(bean, ConvertUtils.convert(obj, field.getType()));
+			this.embeddedFields = plan.embeddedFields;
+			this.embedded = new Resolution[plan.embedded.length];
+			for (int i = 0; i < embedded.length; i++) {
+				embedded[i] = new Resolution(plan.embedded[i], columnNames);
 			}
 		}
+
+		Object newBean(Object[] data) throws InstantiationException, IllegalAccessException {
+			final Object bean = GeneratedRowMappers.newInstance(type, generated);
+			final int length = Math.min(data.length, fields.length);
+			for (int i = 0; i < length; i++) {
+				final PropertyBinding binding = fields[i];
+				if (binding != null && data[i] != null) {
+					binding.set(bean, data[i]);
+				}
+			}
+
+			// transform complex objects
+			for (int i = 0; i < embedded.length; i++) {
+				// sets the embedded.
+				embeddedFields[i].set(bean, embedded[i].newBean(data));
+			}
+			return bean;
+		}
 	}
 
-	private Map<String, Field> fieldMapWithEmbedded(Class<?> type) {
-		final Map<String, Field> fields = Maps.newHashMap();
+	/**
+	 * Nomes e tipos das colunas de um result set, lidos dos metadados uma vez
+	 * por result set. Os nomes são reaproveitados (e com eles a
+	 * {@link Resolution}) enquanto os result sets mapeados tiverem as mesmas
+	 * colunas, como em {@link MappingPlan}. O result set não é mantido em
+	 * memória.
+	 */
+	private static final class ResultSetColumns {
+
+		final WeakReference<ResultSet> resultSet;
+
+		final String[] columnNames;
+
+		final int[] types;
+
+		ResultSetColumns(ResultSet resultSet, ResultSetColumns previous) throws SQLException {
+			final ResultSetMetaData metaData = resultSet.getMetaData();
+			final int columnCount = metaData.getColumnCount();
+			final String[] columnNames = new String[columnCount + 1];
+			this.types = new int[columnCount + 1];
+			for (int index = 1; index <= columnCount; index++) {
+				columnNames[index] = JdbcUtils.lookupColumnName(metaData, index);
+				types[index] = metaData.getColumnType(index);
+			}
+			this.resultSet = new WeakReference<ResultSet>(resultSet);
+			this.columnNames = previous != null && Arrays.equals(previous.types, types)
+					&& Arrays.equals(previous.columnNames, columnNames) ? previous.columnNames : columnNames;
+		}
+
+		boolean readFrom(ResultSet resultSet) {
+			return this.resultSet.get() == resultSet;
+		}
+	}
+
+	private static List<Field> fieldsWithEmbedded(Class<?> type) {
+		final List<Field> fields = Lists.newArrayList();
 		for (Field field : type.getDeclaredFields()) {
 			if (field.isAnnotationPresent(Embedded.class)) {
-				fields.put(field.getName(), field);
+				fields.add(field);
 			}
 		}
-		return ImmutableMap.copyOf(fields);
+		return fields;
 	}
 
-	private ImmutableMap<String, Field> fieldsAnnotatedWithColumn(Class<?> type) {
+	private static ImmutableMap<String, Field> fieldsAnnotatedWithColumn(Class<?> type) {
 		final Map<String, Field> fields = Maps.newHashMap();
 		for (Field field : type.getDeclaredFields()) {
 			if (field.isAnnotationPresent(Column.class)) {
@@ -142,7 +330,7 @@ public final class MappedResultTransformer<T> implements ResultTransformer, RowM
 		return ImmutableMap.copyOf(fields);
 	}
 
-	private ImmutableMap<String, Field> fieldsAnnotatedWithColumns(Class<?> type) {
+	private static ImmutableMap<String, Field> fieldsAnnotatedWithColumns(Class<?> type) {
 		final Map<String, Field> fields = Maps.newHashMap();
 		for (Field field : type.getDeclaredFields()) {
 			if (field.isAnnotationPresent(Columns.class)) {
@@ -154,7 +342,7 @@ public final class MappedResultTransformer<T> implements ResultTransformer, RowM
 		return ImmutableMap.copyOf(fields);
 	}
 
-	private String columnName(Field field) {
+	private static String columnName(Field field) {
 		final String name = field.getAnnotation(Column.class).name();
 		if (name != null) {
 			return name;
@@ -0,0 +1,206 @@
+package br.com.bettercode.resulttransformer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * Plano de mapeamento de uma classe para um formato de result set: resolve,
+ * uma única vez, a propriedade e a leitura tipada associadas a cada índice de
+ * coluna.
+ *
+ * <p>
+ * Os planos são mantidos em cache por (classe, nomes e tipos das colunas); as
+ * propriedades anotadas com {@link Columns} de cada classe são lidas uma única
+ * vez, do {@link GeneratedRowMapper} da classe quando houver.
+ * </p>
+ *
+ * @param <T>
+ *            - tipo da classe mapeada
+ */
+final class MappingPlan<T> {
+
+	/** Limite de formatos de result set mantidos por classe. */
+	private static final int MAX_PLANS_PER_CLASS = 64;
+
+	private static final ConcurrentMap<Class<?>, ClassMapping> MAPPINGS = new ConcurrentHashMap<Class<?>, ClassMapping>();
+
+	private final Class<T> clazz;
+
+	/** Mapeador gerado da classe; null se mapeada por reflexão. */
+	private final GeneratedRowMapper<T> generated;
+
+	/** Propriedade de cada coluna (índice 0 = coluna 1); null se não mapeada. */
+	private final PropertyBinding[] bindings;
+
+	/** Leitura tipada de cada coluna mapeada. */
+	private final ColumnReader[] readers;
+
+	private MappingPlan(Class<T> clazz, GeneratedRowMapper<T> generated, PropertyBinding[] bindings,
+			ColumnReader[] readers) {
+		this.clazz = clazz;
+		this.generated = generated;
+		this.bindings = bindings;
+		this.readers = readers;
+	}
+
+	/**
+	 * Recupera (ou monta) o plano da classe para o formato do result set.
+	 */
+	static <T> MappingPlan<T> of(Class<T> clazz, ResultSetMetaData metaData) throws SQLException {
+		final int columnCount = metaData.getColumnCount();
+		final String[] columnNames = new String[columnCount];
+		final int[] types = new int[columnCount];
+		final int[] scales = new int[columnCount];
+		for (int i = 1; i <= columnCount; i++) {
+			// Recupera nome e tipo da coluna SQL
+			columnNames[i - 1] = metaData.getColumnName(i);
+			types[i - 1] = metaData.getColumnType(i);
+			scales[i - 1] = isNumeric(types[i - 1]) ? metaData.getScale(i) : 0;
+		}
+		return of(clazz, columnNames, types, scales);
+	}
+
+	private static boolean isNumeric(int sqlType) {
+		return sqlType == Types.NUMERIC || sqlType == Types.DECIMAL;
+	}
+
+	/**
+	 * Recupera (ou monta) o plano da classe para as colunas informadas.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> MappingPlan<T> of(Class<T> clazz, String[] columnNames, int[] types, int[] scales) {
+		ClassMapping mapping = MAPPINGS.get(clazz);
+		if (mapping == null) {
+			final ClassMapping created = new ClassMapping(clazz);
+			mapping = MAPPINGS.putIfAbsent(clazz, created);
+			if (mapping == null) {
+				mapping = created;
+			}
+		}
+
+		final List<?> key = Arrays.asList(Arrays.asList(columnNames), Arrays.toString(types), Arrays.toString(scales));
+		MappingPlan<T> plan = (MappingPlan<T>) mapping.plans.get(key);
+		if (plan == null) {
+			plan = mapping.plan(clazz, columnNames, types, scales);
+			if (mapping.plans.size() >= MAX_PLANS_PER_CLASS) {
+				mapping.plans.clear();
+			}
+			mapping.plans.put(key, plan);
+		}
+		return plan;
+	}
+
+	/**
+	 * Mapeia a linha corrente do result set.
+	 */
+	T mapRow(ResultSet rs) throws SQLException, InstantiationException, IllegalAccessException {
+		final T bean = newInstance();
+		for (int i = 0; i < bindings.length; i++) {
+			final PropertyBinding binding = bindings[i];
+			if (binding != null) {
+				// Atribui o valor da coluna SQL à propriedade da classe
+				readers[i].read(rs, i + 1, bean, binding);
+			}
+		}
+		return bean;
+	}
+
+	/**
+	 * Grava as colunas mapeadas da linha corrente (veja {@link SpilledList}).
+	 */
+	void spillRow(ResultSet rs, DataOutput out) throws SQLException, IOException {
+		for (int i = 0; i < bindings.length; i++) {
+			if (bindings[i] != null) {
+				readers[i].spill(rs, i + 1, out);
+			}
+		}
+	}
+
+	/**
+	 * Mapeia uma linha gravada por {@link #spillRow}.
+	 */
+	T unspillRow(DataInput in) throws IOException, InstantiationException, IllegalAccessException {
+		final T bean = newInstance();
+		for (int i = 0; i < bindings.length; i++) {
+			final PropertyBinding binding = bindings[i];
+			if (binding != null) {
+				readers[i].unspill(in, bean, binding);
+			}
+		}
+		return bean;
+	}
+
+	private T newInstance() throws InstantiationException, IllegalAccessException {
+		return generated != null ? generated.newInstance() : clazz.newInstance();
+	}
+
+	/**
+	 * Propriedades anotadas de uma classe, indexadas pelos nomes de coluna.
+	 */
+	private static final class ClassMapping {
+
+		final GeneratedRowMapper<?> generated;
+
+		final ImmutableMap<String, PropertyBinding> aliases;
+
+		final ConcurrentMap<List<?>, MappingPlan<?>> plans = new ConcurrentHashMap<List<?>, MappingPlan<?>>();
+
+		ClassMapping(Class<?> type) {
+			this.generated = GeneratedRowMappers.find(type);
+			final Map<String, PropertyBinding> aliases = Maps.newHashMap();
+			if (generated != null) {
+				final String[][] columns = generated.columns();
+				for (int i = 0; i < columns.length; i++) {
+					if (columns[i] != null) {
+						final PropertyBinding binding = GeneratedRowMappers.binding(type, generated, i);
+						for (String alias : columns[i]) {
+							if (!aliases.containsKey(alias)) {
+								aliases.put(alias, binding);
+							}
+						}
+					}
+				}
+				this.aliases = ImmutableMap.copyOf(aliases);
+				return;
+			}
+			for (Field field : type.getDeclaredFields()) {
+				if (field.isAnnotationPresent(Columns.class)) {
+					final PropertyBinding binding = new PropertyBinding(field);
+					for (String alias : ResultSetMapper.retrieveColumnNames(field)) {
+						if (!aliases.containsKey(alias)) {
+							aliases.put(alias, binding);
+						}
+					}
+				}
+			}
+			this.aliases = ImmutableMap.copyOf(aliases);
+		}
+
+		@SuppressWarnings("unchecked")
+		<T> MappingPlan<T> plan(Class<T> clazz, String[] columnNames, int[] types, int[] scales) {
+			final PropertyBinding[] bindings = new PropertyBinding[columnNames.length];
+			final ColumnReader[] readers = new ColumnReader[columnNames.length];
+			for (int i = 0; i < columnNames.length; i++) {
+				bindings[i] = columnNames[i] == null ? null : aliases.get(columnNames[i]);
+				if (bindings[i] != null) {
+					readers[i] = ColumnReader.of(types[i], scales[i], bindings[i].type());
+				}
+			}
+			return new MappingPlan<T>(clazz, (GeneratedRowMapper<T>) generated, bindings, readers);
+		}
+	}
+}
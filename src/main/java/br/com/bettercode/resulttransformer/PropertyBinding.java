@@ -0,0 +1,58 @@
+package br.com.bettercode.resulttransformer;
+
+import java.lang.reflect.Field;
+
+/**
+ * Associação entre uma coluna e uma propriedade: o acessor criado pela
+ * estratégia em uso e o conversor do último tipo de valor recebido.
+ */
+final class PropertyBinding {
+
+	private final FieldAccessor accessor;
+
+	private final Class<?> type;
+
+	private volatile Conversion conversion;
+
+	PropertyBinding(Field field) {
+		this.accessor = FieldAccessors.create(field);
+		this.type = field.getType();
+	}
+
+	PropertyBinding(FieldAccessor accessor, Class<?> type) {
+		this.accessor = accessor;
+		this.type = type;
+	}
+
+	FieldAccessor accessor() {
+		return accessor;
+	}
+
+	Class<?> type() {
+		return type;
+	}
+
+	/**
+	 * Converte e atribui o valor (não nulo) à propriedade.
+	 */
+	void set(Object bean, Object value) throws IllegalAccessException {
+		Conversion conversion = this.conversion;
+		if (conversion == null || conversion.source != value.getClass()) {
+			conversion = new Conversion(value.getClass(), ValueConverters.resolve(value.getClass(), type));
+			this.conversion = conversion;
+		}
+		accessor.set(bean, conversion.converter.convert(value));
+	}
+
+	private static final class Conversion {
+
+		final Class<?> source;
+
+		final ValueConverter converter;
+
+		Conversion(Class<?> source, ValueConverter converter) {
+			this.source = source;
+			this.converter = converter;
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package br.com.bettercode.resulttransformer;
+
+import java.io.Closeable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Percorre o result set mapeando uma linha por vez. O result set é fechado
+ * quando a última linha é lida ou em {@link #close()}.
+ * 
+ * @param <T>
+ *            - tipo da classe mapeada
+ */
+public class ResultSetIterator<T> implements Iterator<T>, Closeable {
+
+	private static Logger log = Logger.getLogger(ResultSetIterator.class);
+
+	private final ResultSet rs;
+	private final MappingPlan<T> plan;
+
+	private boolean fetched = false;
+	private boolean hasNext = false;
+	private boolean closed = false;
+	private int rows = 0;
+
+	public ResultSetIterator(ResultSet rs, Class<T> clazz) {
+		this.rs = rs;
+		try {
+			this.plan = MappingPlan.of(clazz, rs.getMetaData());
+		} catch (SQLException e) {
+			close();
+			throw new ResultSetMapperException("Error while reading result set metadata. " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!fetched) {
+			if (closed) {
+				return false;
+			}
+			try {
+				hasNext = rs.next();
+			} catch (SQLException e) {
+				close();
+				throw new ResultSetMapperException("Error while mapping result set. " + e.getMessage(), e);
+			}
+			fetched = true;
+			if (!hasNext) {
+				close();
+			}
+		}
+		return hasNext;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		fetched = false;
+		rows++;
+		return ResultSetMapper.retrieveObjectFromRow(rs, plan);
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Result set rows cannot be removed.");
+	}
+
+	/**
+	 * Fecha o result set. Pode ser chamado mais de uma vez.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		hasNext = false;
+		fetched = true;
+		try {
+			rs.close();
+		} catch (SQLException e) {
+			log.warn("Error while closing result set. " + e.getMessage(), e);
+		} finally {
+			afterClose();
+		}
+	}
+
+	/**
+	 * @return quantidade de linhas mapeadas até o momento
+	 */
+	public int getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Chamado uma única vez, após o fechamento do result set.
+	 */
+	protected void afterClose() {
+	}
+}
@@ -1,220 +1,321 @@
-package br.com.bettercode.resulttransformer;
-
-import java.lang.reflect.Field;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-
-import org.apache.commons.beanutils.ConvertUtils;
-import org.apache.log4j.Logger;
-
-
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
-
-/**
- * Agrupa métodos para realização do mapeamento de result set.
- * 
- * @author saulo.borges
- * 
- */
-public class ResultSetMapper {
-
-	private static Logger log = Logger.getLogger(ResultSetMapper.class);
-
-	/**
-	 * Mapeia o result set e retorna lista de objetos.
-	 * 
-	 * @param rs
-	 *            - result set
-	 * @param clazz
-	 *            - classe a ser mapeada
-	 * @return
-	 */
-	public static <T> List<T> mapResultSet(ResultSet rs, Class<T> clazz) {
-
-		// Validação
-		if (rs == null || clazz == null) {
-			return null;
-		}
-
-		List<T> retList = new ArrayList<T>();
-
-		try {
-			// Recupera o nome das colunas do result set
-			String[] columnNames = retrieveColumnNames(rs);
-
-			while (rs.next()) {
-
-				// Mapeia objeto e adiciona-o na lista
-				retList.add(retrieveObjectFromRow(rs, columnNames, clazz));
-
-			}
-		} catch (SQLException e) {
-			logAndThrow("Error while mapping result set." + e.getMessage(), e);
-		}
-
-		return retList;
-	}
-
-	// /////////////////////////////////////////////////////////////////////////
-	// MÉTODOS PRIVADOS
-	// /////////////////////////////////////////////////////////////////////////
-
-	/**
-	 * Obtém nome das colunas a partir do result set.
-	 * 
-	 * @param rs
-	 *            - result set
-	 * @return
-	 * @throws SQLException
-	 */
-	private static String[] retrieveColumnNames(ResultSet rs) throws SQLException {
-
-		// Validação
-		if (rs == null) {
-			return null;
-		}
-
-		// Obtém meta dados
-		ResultSetMetaData metaData = rs.getMetaData();
-
-		String[] columnNames = new String[metaData.getColumnCount()];
-
-		for (int i = 1; i <= metaData.getColumnCount(); i++) {
-
-			// Recupera nome da coluna SQL
-			columnNames[i - 1] = metaData.getColumnName(i);
-		}
-
-		return columnNames;
-
-	}
-
-	/**
-	 * Recupera objeto a partir da linha do result set
-	 * 
-	 * @param rs
-	 * @param columnNames
-	 * @param clazz
-	 * @return
-	 */
-	private static <T> T retrieveObjectFromRow(final ResultSet rs, final String[] columnNames, final Class<T> clazz) {
-		final Map<Field, String[]> fields = mapFields(clazz);
-		T bean = null;
-
-		try {
-			bean = clazz.newInstance();
-
-			for (String columnName : columnNames) {
-				// Busca propriedade mapeada para o nome da coluna corrente
-				final Field field = searchFieldByColumnName(fields, columnName);
-
-				if (field == null) {
-
-					continue;
-				}
-
-				field.setAccessible(true);
-
-				if(rs.getObject(columnName) != null){
-					
-					// Atribui o valor da coluna SQL à propriedade da classe
-					field.set(bean, ConvertUtils.convert(rs.getObject(columnName), field.getType()));
-				}
-			}
-
-		} catch (Exception e) {
-			logAndThrow("Error while doing reflection operations." + e.getMessage(), e);
-		}
-
-		return bean;
-	}
-
-	/**
-	 * Retorna a propriedade (field) que contém o nome da coluna SQL.
-	 * 
-	 * @param fields
-	 *            - mapa de (campo, lista de nomes de colunas SQL)
-	 * @param columnName
-	 *            - nome da coluna
-	 * @return
-	 */
-	private static Field searchFieldByColumnName(Map<Field, String[]> fields, String columnName) {
-
-		// Validação
-		if (fields == null || columnName == null) {
-			return null;
-		}
-
-		for (Entry<Field, String[]> entry : fields.entrySet()) {
-
-			if (Arrays.binarySearch(entry.getValue(), columnName) >= 0) {
-				// Campo possui a coluna buscada
-
-				return entry.getKey();
-			}
-		}
-
-		return null;
-	}
-
-	/**
-	 * Mapeiam propriedades e retorna mapa (propriedade, nomes de colunas SQL
-	 * associadas)
-	 * 
-	 * @param type
-	 * @return
-	 */
-	private static ImmutableMap<Field, String[]> mapFields(Class<?> type) {
-		final Map<Field, String[]> fields = Maps.newHashMap();
-
-		for (Field field : type.getDeclaredFields()) {
-
-			if (field.isAnnotationPresent(Columns.class)) {
-				// Anotação presente
-
-				// Recupera os nomes de colunas SQL's associadas à propridade
-				fields.put(field, retrieveColumnNames(field));
-			}
-		}
-		return ImmutableMap.copyOf(fields);
-	}
-
-	/**
-	 * Obtém nomes da coluna disponíveis para a propriedade.
-	 * 
-	 * @param field
-	 * @return
-	 */
-	private static String[] retrieveColumnNames(Field field) {
-
-		final String[] names = field.getAnnotation(Columns.class).names();
-
-		if (names != null) {
-			return names;
-		}
-
-		return new String[] { field.getName() };
-	}
-
-	/**
-	 * Registra log e lança exceção.
-	 * 
-	 * @param errorMsg
-	 * @param e
-	 */
-	private static void logAndThrow(String errorMsg, Exception e) {
-
-		// Registra mensagem no log.
-		log.error(errorMsg, e);
-
-		// Lança exceção
-		throw new ResultSetMapperException(errorMsg, e);
-	}
-}
+package br.com.bettercode.resulttransformer;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import br.com.bettercode.procedure.Validator;
+
+/**
+ * Agrupa métodos para realização do mapeamento de result set.
+ * 
+ * @author saulo.borges
+ * 
+ */
+public class ResultSetMapper {
+
+	private static Logger log = Logger.getLogger(ResultSetMapper.class);
+
+	/** Limite da estimativa de colunas de tamanho variável (LOBs, etc). */
+	private static final int MAX_COLUMN_WIDTH_ESTIMATE = 4000;
+
+	/**
+	 * Mapeia o result set e retorna lista de objetos.
+	 * 
+	 * @param rs
+	 *            - result set
+	 * @param clazz
+	 *            - classe a ser mapeada
+	 * @return
+	 */
+	public static <T> List<T> mapResultSet(ResultSet rs, Class<T> clazz) {
+
+		// Validação
+		if (rs == null || clazz == null) {
+			return null;
+		}
+
+		List<T> retList = new ArrayList<T>();
+
+		try {
+			// Resolve a propriedade de cada coluna do result set
+			final MappingPlan<T> plan = MappingPlan.of(clazz, rs.getMetaData());
+
+			while (rs.next()) {
+
+				// Mapeia objeto e adiciona-o na lista
+				retList.add(retrieveObjectFromRow(rs, plan));
+
+			}
+		} catch (SQLException e) {
+			logAndThrow("Error while mapping result set. " + e.getMessage(), e);
+		}
+
+		return retList;
+	}
+
+	/**
+	 * Mapeia o result set mantendo em memória apenas as linhas até o limite
+	 * informado; as demais são gravadas em arquivo temporário e lidas sob
+	 * demanda (veja {@link SpilledList}). Sem limites, equivale a
+	 * {@link #mapResultSet(ResultSet, Class)}.
+	 * 
+	 * @param rs
+	 *            - result set
+	 * @param clazz
+	 *            - classe a ser mapeada
+	 * @param spillRows
+	 *            - linhas mantidas em memória; 0 não limita
+	 * @param spillBytes
+	 *            - bytes mantidos em memória, pela largura estimada das
+	 *            linhas; 0 não limita
+	 * @return lista mapeada; quando excede um dos limites, uma
+	 *         {@link SpilledList} que deve ser fechada
+	 */
+	public static <T> List<T> mapResultSet(ResultSet rs, Class<T> clazz, int spillRows, long spillBytes) {
+
+		// Validação
+		if (rs == null || clazz == null) {
+			return null;
+		}
+		if (spillRows <= 0 && spillBytes <= 0) {
+			return mapResultSet(rs, clazz);
+		}
+
+		List<T> retList = new ArrayList<T>();
+		SpilledList<T> spilled = null;
+
+		try {
+			final MappingPlan<T> plan = MappingPlan.of(clazz, rs.getMetaData());
+			final long width = spillBytes > 0 ? estimateRowWidth(rs.getMetaData()) : 0;
+
+			while (rs.next()) {
+				if (spilled == null) {
+					final int rows = retList.size();
+					if ((spillRows > 0 && rows >= spillRows) || (spillBytes > 0 && rows * width >= spillBytes)) {
+						spilled = SpilledList.create(plan, retList);
+					} else {
+						retList.add(retrieveObjectFromRow(rs, plan));
+						continue;
+					}
+				}
+				spilled.append(rs);
+			}
+			if (spilled != null) {
+				spilled.finish();
+				return spilled;
+			}
+		} catch (SQLException e) {
+			closeQuietly(spilled);
+			logAndThrow("Error while mapping result set. " + e.getMessage(), e);
+		} catch (IOException e) {
+			closeQuietly(spilled);
+			logAndThrow("Error while spilling result set. " + e.getMessage(), e);
+		} catch (RuntimeException e) {
+			closeQuietly(spilled);
+			throw e;
+		}
+
+		return retList;
+	}
+
+	private static void closeQuietly(SpilledList<?> spilled) {
+		if (spilled != null) {
+			spilled.close();
+		}
+	}
+
+	/**
+	 * Lê o result set por colunas, em arrays primitivos, sem criar objetos por
+	 * linha.
+	 * 
+	 * @param rs
+	 *            - result set
+	 * @return
+	 * @see ColumnarResult
+	 */
+	public static ColumnarResult mapColumnar(ResultSet rs) {
+
+		// Validação
+		if (rs == null) {
+			return null;
+		}
+
+		try {
+			return ColumnarResult.read(rs);
+		} catch (SQLException e) {
+			logAndThrow("Error while reading columnar result set. " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Mapeia o result set linha a linha, entregando cada objeto ao handler sem
+	 * manter a lista em memória. O result set é fechado ao final.
+	 * 
+	 * @param rs
+	 *            - result set
+	 * @param clazz
+	 *            - classe a ser mapeada
+	 * @param handler
+	 *            - recebe cada objeto mapeado
+	 * @return quantidade de linhas mapeadas
+	 */
+	public static <T> int mapResultSet(ResultSet rs, Class<T> clazz, RowHandler<? super T> handler) {
+
+		// Validação
+		if (rs == null || clazz == null || handler == null) {
+			return 0;
+		}
+
+		return mapRows(iterate(rs, clazz), handler);
+	}
+
+	/**
+	 * Entrega ao handler cada objeto do iterador e o fecha ao final.
+	 * 
+	 * @param it
+	 *            - iterador do result set
+	 * @param handler
+	 *            - recebe cada objeto mapeado
+	 * @return quantidade de linhas mapeadas
+	 */
+	public static <T> int mapRows(ResultSetIterator<T> it, RowHandler<? super T> handler) {
+		int rows = 0;
+		try {
+			while (it.hasNext()) {
+				handler.handleRow(it.next());
+				rows++;
+			}
+		} finally {
+			it.close();
+		}
+		return rows;
+	}
+
+	/**
+	 * Retorna iterador que mapeia o result set sob demanda. O iterador deve
+	 * ser fechado caso não seja percorrido até o fim.
+	 * 
+	 * @param rs
+	 *            - result set
+	 * @param clazz
+	 *            - classe a ser mapeada
+	 * @return
+	 */
+	public static <T> ResultSetIterator<T> iterate(ResultSet rs, Class<T> clazz) {
+		Validator.GET.notNull(rs, clazz);
+		return new ResultSetIterator<T>(rs, clazz);
+	}
+
+	/**
+	 * Estima, a partir dos metadados, a largura em bytes de uma linha do
+	 * result set.
+	 * 
+	 * @param metaData
+	 *            - metadados do result set
+	 * @return
+	 * @throws SQLException
+	 */
+	public static int estimateRowWidth(ResultSetMetaData metaData) throws SQLException {
+		int width = 0;
+		for (int i = 1; i <= metaData.getColumnCount(); i++) {
+			width += estimateColumnWidth(metaData, i);
+		}
+		return width;
+	}
+
+	// /////////////////////////////////////////////////////////////////////////
+	// MÉTODOS PRIVADOS
+	// /////////////////////////////////////////////////////////////////////////
+
+	/**
+	 * Largura estimada de uma coluna: tamanho fixo para tipos numéricos e de
+	 * data, tamanho declarado (limitado) para os demais.
+	 */
+	private static int estimateColumnWidth(ResultSetMetaData metaData, int column) throws SQLException {
+		switch (metaData.getColumnType(column)) {
+		case Types.BIT:
+		case Types.BOOLEAN:
+		case Types.TINYINT:
+			return 1;
+		case Types.SMALLINT:
+			return 2;
+		case Types.INTEGER:
+		case Types.REAL:
+			return 4;
+		case Types.BIGINT:
+		case Types.DOUBLE:
+		case Types.FLOAT:
+		case Types.DATE:
+		case Types.TIME:
+		case Types.TIMESTAMP:
+			return 8;
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+			return 22;
+		default:
+			final int size = metaData.getColumnDisplaySize(column);
+			return size <= 0 ? MAX_COLUMN_WIDTH_ESTIMATE : Math.min(size, MAX_COLUMN_WIDTH_ESTIMATE);
+		}
+	}
+
+	/**
+	 * Recupera objeto a partir da linha do result set
+	 * 
+	 * @param rs
+	 * @param plan
+	 *            - plano de mapeamento do result set
+	 * @return
+	 */
+	static <T> T retrieveObjectFromRow(final ResultSet rs, final MappingPlan<T> plan) {
+		T bean = null;
+
+		try {
+			bean = plan.mapRow(rs);
+		} catch (Exception e) {
+			logAndThrow("Error while doing reflection operations. " + e.getMessage(), e);
+		}
+
+		return bean;
+	}
+
+	/**
+	 * Obtém nomes da coluna disponíveis para a propriedade.
+	 * 
+	 * @param field
+	 * @return
+	 */
+	static String[] retrieveColumnNames(Field field) {
+
+		final String[] names = field.getAnnotation(Columns.class).names();
+
+		if (names != null) {
+			return names;
+		}
+
+		return new String[] { field.getName() };
+	}
+
+	/**
+	 * Registra log e lança exceção.
+	 * 
+	 * @param errorMsg
+	 * @param e
+	 */
+	private static void logAndThrow(String errorMsg, Exception e) {
+
+		// Registra mensagem no log.
+		log.error(errorMsg, e);
+
+		// Lança exceção
+		throw new ResultSetMapperException(errorMsg, e);
+	}
+}
@@ -0,0 +1,17 @@
+package br.com.bettercode.resulttransformer;
+
+/**
+ * Recebe cada linha mapeada do result set enquanto o cursor ainda está aberto,
+ * sem que a lista completa seja mantida em memória.
+ * 
+ * @param <T>
+ *            - tipo da classe mapeada
+ */
+public interface RowHandler<T> {
+
+	/**
+	 * @param row
+	 *            - objeto mapeado a partir da linha corrente
+	 */
+	void handleRow(T row);
+}
@@ -0,0 +1,177 @@
+package br.com.bettercode.resulttransformer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+/**
+ * Codificação dos valores gravados em {@link SpilledList}: um byte com o tipo
+ * seguido do valor. Tipos não previstos são gravados com serialização Java.
+ */
+final class SpillCodec {
+
+	private static final byte NULL = 0;
+	private static final byte STRING = 1;
+	private static final byte INTEGER = 2;
+	private static final byte LONG = 3;
+	private static final byte DOUBLE = 4;
+	private static final byte FLOAT = 5;
+	private static final byte SHORT = 6;
+	private static final byte BYTE = 7;
+	private static final byte BOOLEAN = 8;
+	private static final byte BIG_DECIMAL = 9;
+	private static final byte BIG_INTEGER = 10;
+	private static final byte TIMESTAMP = 11;
+	private static final byte SQL_DATE = 12;
+	private static final byte SQL_TIME = 13;
+	private static final byte DATE = 14;
+	private static final byte BYTES = 15;
+	private static final byte SERIALIZED = 16;
+
+	private SpillCodec() {
+	}
+
+	/**
+	 * Texto sem o limite de 64 KB de {@link DataOutput#writeUTF(String)}.
+	 */
+	static void writeString(DataOutput out, String value) throws IOException {
+		out.writeInt(value.length());
+		out.writeChars(value);
+	}
+
+	static String readString(DataInput in) throws IOException {
+		final char[] chars = new char[in.readInt()];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = in.readChar();
+		}
+		return new String(chars);
+	}
+
+	static void writeObject(DataOutput out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof String) {
+			out.writeByte(STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(INTEGER);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Short) {
+			out.writeByte(SHORT);
+			out.writeShort((Short) value);
+		} else if (value instanceof Byte) {
+			out.writeByte(BYTE);
+			out.writeByte((Byte) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value.getClass() == BigDecimal.class) {
+			out.writeByte(BIG_DECIMAL);
+			writeString(out, value.toString());
+		} else if (value.getClass() == BigInteger.class) {
+			out.writeByte(BIG_INTEGER);
+			writeString(out, value.toString());
+		} else if (value.getClass() == Timestamp.class) {
+			out.writeByte(TIMESTAMP);
+			out.writeLong(((Timestamp) value).getTime());
+			out.writeInt(((Timestamp) value).getNanos());
+		} else if (value.getClass() == java.sql.Date.class) {
+			out.writeByte(SQL_DATE);
+			out.writeLong(((java.sql.Date) value).getTime());
+		} else if (value.getClass() == Time.class) {
+			out.writeByte(SQL_TIME);
+			out.writeLong(((Time) value).getTime());
+		} else if (value.getClass() == java.util.Date.class) {
+			out.writeByte(DATE);
+			out.writeLong(((java.util.Date) value).getTime());
+		} else if (value instanceof byte[]) {
+			out.writeByte(BYTES);
+			out.writeInt(((byte[]) value).length);
+			out.write((byte[]) value);
+		} else if (value instanceof Serializable) {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final ObjectOutputStream objects = new ObjectOutputStream(bytes);
+			objects.writeObject(value);
+			objects.close();
+			out.writeByte(SERIALIZED);
+			out.writeInt(bytes.size());
+			out.write(bytes.toByteArray());
+		} else {
+			throw new ResultSetMapperException(String.format("Values of type %s cannot be spilled.", value.getClass()
+					.getName()));
+		}
+	}
+
+	static Object readObject(DataInput in) throws IOException {
+		final byte type = in.readByte();
+		switch (type) {
+		case NULL:
+			return null;
+		case STRING:
+			return readString(in);
+		case INTEGER:
+			return Integer.valueOf(in.readInt());
+		case LONG:
+			return Long.valueOf(in.readLong());
+		case DOUBLE:
+			return Double.valueOf(in.readDouble());
+		case FLOAT:
+			return Float.valueOf(in.readFloat());
+		case SHORT:
+			return Short.valueOf(in.readShort());
+		case BYTE:
+			return Byte.valueOf(in.readByte());
+		case BOOLEAN:
+			return Boolean.valueOf(in.readBoolean());
+		case BIG_DECIMAL:
+			return new BigDecimal(readString(in));
+		case BIG_INTEGER:
+			return new BigInteger(readString(in));
+		case TIMESTAMP:
+			final Timestamp timestamp = new Timestamp(in.readLong());
+			timestamp.setNanos(in.readInt());
+			return timestamp;
+		case SQL_DATE:
+			return new java.sql.Date(in.readLong());
+		case SQL_TIME:
+			return new Time(in.readLong());
+		case DATE:
+			return new java.util.Date(in.readLong());
+		case BYTES:
+			final byte[] bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+			return bytes;
+		case SERIALIZED:
+			final byte[] serialized = new byte[in.readInt()];
+			in.readFully(serialized);
+			final ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(serialized));
+			try {
+				return objects.readObject();
+			} catch (ClassNotFoundException e) {
+				throw new ResultSetMapperException("Error while reading spilled value. " + e.getMessage(), e);
+			} finally {
+				objects.close();
+			}
+		default:
+			throw new IOException("Unknown spilled value type " + type);
+		}
+	}
+}
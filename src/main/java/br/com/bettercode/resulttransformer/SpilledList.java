@@ -0,0 +1,306 @@
+package br.com.bettercode.resulttransformer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Lista de objetos mapeados cujas linhas excedentes foram gravadas em um
+ * arquivo temporário: as primeiras linhas ficam em memória e as demais são
+ * lidas sob demanda, a cada acesso ou iteração, mantendo limitado o uso de
+ * heap. A lista pode ser percorrida quantas vezes for necessário.
+ *
+ * <p>
+ * Apenas as colunas mapeadas são gravadas, com a mesma leitura tipada do
+ * mapeamento em memória. O arquivo é removido em {@link #close()}; depois
+ * disso a lista não pode mais ser lida. Listas não fechadas mantêm o arquivo
+ * em disco até o término da JVM.
+ * </p>
+ *
+ * <p>
+ * A iteração é sequencial e independente por iterador. O acesso por índice
+ * parte do ponto indexado mais próximo (a cada {@value #INDEX_INTERVAL}
+ * linhas), sendo indicado para leituras próximas da anterior.
+ * </p>
+ *
+ * @param <T>
+ *            - tipo da classe mapeada
+ * @see ResultSetMapper#mapResultSet(ResultSet, Class, int, long)
+ */
+public final class SpilledList<T> extends AbstractList<T> implements Closeable {
+
+	private static Logger log = Logger.getLogger(SpilledList.class);
+
+	/** Linhas gravadas entre dois pontos indexados. */
+	static final int INDEX_INTERVAL = 256;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final MappingPlan<T> plan;
+
+	private final List<T> head;
+
+	private final File file;
+
+	private CountingOutputStream counter;
+
+	private DataOutputStream writer;
+
+	private int spilledRows = 0;
+
+	/** Posição no arquivo da linha i * INDEX_INTERVAL. */
+	private long[] offsets = new long[16];
+
+	/** Leitura usada pelo acesso por índice e a próxima linha que ela lê. */
+	private DataInputStream cursor;
+
+	private int cursorRow;
+
+	private final Set<Closeable> readers = Collections.newSetFromMap(new WeakHashMap<Closeable, Boolean>());
+
+	private boolean closed = false;
+
+	private SpilledList(MappingPlan<T> plan, List<T> head) throws IOException {
+		this.plan = plan;
+		this.head = head;
+		this.file = File.createTempFile("procedure", ".spill");
+		// Garante a remoção caso a lista não seja fechada
+		file.deleteOnExit();
+		try {
+			this.counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+			this.writer = new DataOutputStream(counter);
+		} catch (IOException e) {
+			delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param head
+	 *            - linhas já mapeadas, mantidas em memória
+	 */
+	static <T> SpilledList<T> create(MappingPlan<T> plan, List<T> head) throws IOException {
+		return new SpilledList<T>(plan, head);
+	}
+
+	/**
+	 * Grava a linha corrente do result set.
+	 */
+	void append(ResultSet rs) throws SQLException, IOException {
+		if (spilledRows % INDEX_INTERVAL == 0) {
+			final int block = spilledRows / INDEX_INTERVAL;
+			if (block == offsets.length) {
+				offsets = Arrays.copyOf(offsets, block * 2);
+			}
+			offsets[block] = counter.count;
+		}
+		plan.spillRow(rs, writer);
+		spilledRows++;
+	}
+
+	/**
+	 * Conclui a gravação; a partir daqui a lista pode ser lida.
+	 */
+	void finish() throws IOException {
+		writer.close();
+		writer = null;
+	}
+
+	/**
+	 * @return quantidade de linhas gravadas em arquivo
+	 */
+	public int getSpilledRows() {
+		return spilledRows;
+	}
+
+	@Override
+	public int size() {
+		return head.size() + spilledRows;
+	}
+
+	@Override
+	public synchronized T get(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException(String.format("Index %d of %d.", index, size()));
+		}
+		if (index < head.size()) {
+			return head.get(index);
+		}
+		checkOpen();
+
+		final int row = index - head.size();
+		try {
+			if (cursor == null || row < cursorRow || row / INDEX_INTERVAL > cursorRow / INDEX_INTERVAL) {
+				closeQuietly(cursor);
+				cursor = open(row / INDEX_INTERVAL);
+				cursorRow = row / INDEX_INTERVAL * INDEX_INTERVAL;
+			}
+			while (cursorRow < row) {
+				plan.unspillRow(cursor);
+				cursorRow++;
+			}
+			cursorRow++;
+			return plan.unspillRow(cursor);
+		} catch (Exception e) {
+			closeQuietly(cursor);
+			cursor = null;
+			throw new ResultSetMapperException("Error while reading spilled result set. " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new SpilledIterator();
+	}
+
+	/**
+	 * Remove o arquivo. Pode ser chamado mais de uma vez.
+	 */
+	@Override
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		closeQuietly(writer);
+		closeQuietly(cursor);
+		cursor = null;
+		for (Closeable reader : readers.toArray(new Closeable[0])) {
+			closeQuietly(reader);
+		}
+		readers.clear();
+		delete();
+	}
+
+	private void delete() {
+		if (!file.delete() && file.exists()) {
+			log.warn("Could not delete spill file " + file);
+		}
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Spilled result set has been closed.");
+		}
+		if (writer != null) {
+			throw new IllegalStateException("Spilled result set is still being written.");
+		}
+	}
+
+	private DataInputStream open(int block) throws IOException {
+		final FileInputStream in = new FileInputStream(file);
+		try {
+			in.getChannel().position(offsets[block]);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		return new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable == null) {
+			return;
+		}
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			log.warn("Error while closing spill file. " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Percorre as linhas em memória e depois o arquivo, com leitura própria,
+	 * fechada ao final.
+	 */
+	private final class SpilledIterator implements Iterator<T> {
+
+		private int next = 0;
+
+		private DataInputStream in;
+
+		@Override
+		public boolean hasNext() {
+			return next < size();
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			if (next < head.size()) {
+				return head.get(next++);
+			}
+			synchronized (SpilledList.this) {
+				checkOpen();
+				try {
+					if (in == null) {
+						in = open(0);
+						readers.add(in);
+					}
+					final T row = plan.unspillRow(in);
+					next++;
+					if (next == size()) {
+						readers.remove(in);
+						closeQuietly(in);
+					}
+					return row;
+				} catch (Exception e) {
+					readers.remove(in);
+					closeQuietly(in);
+					throw new ResultSetMapperException("Error while reading spilled result set. " + e.getMessage(), e);
+				}
+			}
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Result set rows cannot be removed.");
+		}
+	}
+
+	/**
+	 * Conta os bytes gravados, para indexar a posição das linhas.
+	 */
+	private static final class CountingOutputStream extends FilterOutputStream {
+
+		long count = 0;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,11 @@
+package br.com.bettercode.resulttransformer;
+
+/**
+ * Converte o valor lido do banco para o tipo da propriedade. Resolvido uma
+ * única vez por par (tipo de origem, tipo da propriedade) em
+ * {@link ValueConverters}.
+ */
+interface ValueConverter {
+
+	Object convert(Object value);
+}
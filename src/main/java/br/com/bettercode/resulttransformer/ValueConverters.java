@@ -0,0 +1,67 @@
+package br.com.bettercode.resulttransformer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.beanutils.ConvertUtils;
+import org.apache.commons.beanutils.Converter;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Resolve e mantém em cache o conversor de cada par (tipo de origem, tipo da
+ * propriedade), retirando do mapeamento de cada célula a busca no registro
+ * global do BeanUtils.
+ */
+final class ValueConverters {
+
+	private static final ImmutableMap<Class<?>, Class<?>> WRAPPERS = ImmutableMap.<Class<?>, Class<?>> builder()
+			.put(Boolean.TYPE, Boolean.class).put(Byte.TYPE, Byte.class).put(Character.TYPE, Character.class)
+			.put(Short.TYPE, Short.class).put(Integer.TYPE, Integer.class).put(Long.TYPE, Long.class)
+			.put(Float.TYPE, Float.class).put(Double.TYPE, Double.class).build();
+
+	private static final ValueConverter IDENTITY = new ValueConverter() {
+		@Override
+		public Object convert(Object value) {
+			return value;
+		}
+	};
+
+	private static final ConcurrentMap<List<Class<?>>, ValueConverter> CONVERTERS = new ConcurrentHashMap<List<Class<?>>, ValueConverter>();
+
+	private ValueConverters() {
+	}
+
+	static ValueConverter resolve(Class<?> source, Class<?> target) {
+		final List<Class<?>> key = Arrays.<Class<?>> asList(source, target);
+		ValueConverter converter = CONVERTERS.get(key);
+		if (converter == null) {
+			converter = create(source, target);
+			CONVERTERS.putIfAbsent(key, converter);
+		}
+		return converter;
+	}
+
+	private static ValueConverter create(Class<?> source, final Class<?> target) {
+		if (source == target || source == WRAPPERS.get(target)) {
+			return IDENTITY;
+		}
+
+		// Mesmo algoritmo de ConvertUtils.convert(Object, Class), com o
+		// conversor resolvido antecipadamente
+		final Converter converter = ConvertUtils.lookup(source, target);
+		final Converter toString = target == String.class ? ConvertUtils.lookup(String.class) : null;
+		return new ValueConverter() {
+			@Override
+			public Object convert(Object value) {
+				Object converted = converter == null ? value : converter.convert(target, value);
+				if (toString != null && converted != null && !(converted instanceof String)) {
+					converted = toString.convert(String.class, converted);
+				}
+				return converted;
+			}
+		};
+	}
+}
@@ -0,0 +1,22 @@
+package br.com.bettercode.hibernate.procedure.test.unit;
+
+import javax.persistence.Embedded;
+
+import br.com.bettercode.resulttransformer.Columns;
+
+public class Object3 {
+
+	@Columns(names = { "fogao" })
+	private String f1;
+
+	@Embedded
+	private Object1 object1;
+
+	public String getF1() {
+		return f1;
+	}
+
+	public Object1 getObject1() {
+		return object1;
+	}
+}
@@ -0,0 +1,31 @@
+package br.com.bettercode.hibernate.procedure.test.unit;
+
+import br.com.bettercode.resulttransformer.Columns;
+
+public class Object4 {
+
+	@Columns(names = { "galo" })
+	private String f1;
+
+	@Columns(names = { "f2" })
+	private long f2;
+
+	@Columns(names = { "f3" })
+	private Long f3;
+
+	public String getF1() {
+		return f1;
+	}
+
+	public void setF1(String f1) {
+		this.f1 = "setter:" + f1;
+	}
+
+	public long getF2() {
+		return f2;
+	}
+
+	public Long getF3() {
+		return f3;
+	}
+}
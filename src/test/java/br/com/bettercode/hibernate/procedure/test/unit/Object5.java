@@ -0,0 +1,34 @@
+package br.com.bettercode.hibernate.procedure.test.unit;
+
+import br.com.bettercode.resulttransformer.Columns;
+
+public class Object5 {
+
+	@Columns(names = { "galo" })
+	String f1;
+
+	@Columns(names = { "f2" })
+	long f2;
+
+	@Columns(names = { "f3", "atletico" })
+	Integer f3;
+
+	@Columns(names = { "f4" })
+	private String f4;
+
+	public String getF1() {
+		return f1;
+	}
+
+	public long getF2() {
+		return f2;
+	}
+
+	public Integer getF3() {
+		return f3;
+	}
+
+	public String getF4() {
+		return f4;
+	}
+}
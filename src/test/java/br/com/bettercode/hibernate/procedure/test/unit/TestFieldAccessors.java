@@ -0,0 +1,45 @@
+package br.com.bettercode.hibernate.procedure.test.unit;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+import br.com.bettercode.resulttransformer.FieldAccessors;
+import br.com.bettercode.resulttransformer.MappedResultTransformer;
+import br.com.bettercode.resulttransformer.ResultSetMapper;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class TestFieldAccessors {
+
+	@After
+	public void restoreFactory() {
+		FieldAccessors.setFactory(FieldAccessors.REFLECTION);
+	}
+
+	@Test
+	public void shouldConvertValuesToFieldTypes() throws Exception {
+		final MockResultSet rs = new MockResultSet("1");
+		rs.addColumn("galo", new String[] { "a" });
+		rs.addColumn("f2", new Integer[] { 2 });
+		rs.addColumn("f3", new String[] { "3" });
+
+		final Object4 o = ResultSetMapper.mapResultSet(rs, Object4.class).get(0);
+
+		assertEquals("a", o.getF1());
+		assertEquals(2L, o.getF2());
+		assertEquals(Long.valueOf(3), o.getF3());
+	}
+
+	@Test
+	public void shouldUseSetterWithCglibStrategy() throws Exception {
+		FieldAccessors.setFactory(FieldAccessors.CGLIB);
+
+		final MappedResultTransformer<Object4> transformer = new MappedResultTransformer<Object4>(Object4.class);
+		final Object4 o = (Object4) transformer.transformTuple(new Object[] { "a", 2L }, new String[] { "galo", "f2" });
+
+		assertEquals("setter:a", o.getF1());
+		assertEquals(2L, o.getF2());
+	}
+}
@@ -0,0 +1,320 @@
+package br.com.bettercode.hibernate.procedure.test.unit;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.Session;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.bettercode.procedure.CannotInvokeProcedureException;
+import br.com.bettercode.procedure.Procedure;
+import br.com.bettercode.procedure.ProcedureExecutors;
+import br.com.bettercode.procedure.ProcedureGroup;
+import br.com.bettercode.procedure.ProcedureResult;
+
+import com.mockrunner.mock.jdbc.MockCallableStatement;
+import com.mockrunner.mock.jdbc.MockConnection;
+
+public class TestProcedureAsync {
+
+	private ExecutorService executor;
+
+	private MockProvider provider;
+
+	private Session session;
+
+	@Before
+	public void setUp() {
+		executor = Executors.newSingleThreadExecutor();
+		provider = new MockProvider();
+		session = session(provider);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void shouldExecuteOnOwnConnection() throws Exception {
+		final ProcedureResult result = Procedure.create(session, "sp_async(:a)").input("a", 1).executeAsync(executor)
+				.get(5, TimeUnit.SECONDS);
+
+		assertNotNull(result);
+		assertEquals(1, provider.opened.get());
+		assertTrue(provider.last.isClosed());
+		assertEquals(1, provider.last.getNumberCommits());
+	}
+
+	@Test
+	public void shouldPropagateExecutionError() throws Exception {
+		provider.failure = new SQLException("no connection");
+
+		final Future<ProcedureResult> future = Procedure.create(session, "sp_async(:a)").input("a", 1).executeAsync(
+				executor);
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail();
+		} catch (ExecutionException e) {
+			assertSame(provider.failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void shouldCancelRunningStatement() throws Exception {
+		provider.blocking = true;
+
+		final Future<ProcedureResult> future = Procedure.create(session, "sp_async(:a)").input("a", 1).executeAsync(
+				executor);
+		assertTrue(provider.started.await(5, TimeUnit.SECONDS));
+		assertTrue(future.cancel(true));
+
+		assertTrue(provider.released.await(5, TimeUnit.SECONDS));
+		assertTrue(future.isCancelled());
+		assertTrue(provider.statement.cancelled);
+		assertEquals(0, provider.last.getNumberCommits());
+		assertTrue(provider.last.isClosed());
+	}
+
+	@Test
+	public void shouldUseResultCache() throws Exception {
+		final Procedure procedure = Procedure.create(session, "sp_async_cached(:a)").input("a", 1).cache(1,
+				TimeUnit.MINUTES);
+
+		final ProcedureResult first = procedure.executeAsync(executor).get(5, TimeUnit.SECONDS);
+		final ProcedureResult second = procedure.executeAsync(executor).get(5, TimeUnit.SECONDS);
+
+		assertNotNull(first);
+		assertNotNull(second);
+		assertEquals(1, provider.opened.get());
+	}
+
+	@Test
+	public void shouldCombineGroupResultsInOrder() throws Exception {
+		final Map<String, ProcedureResult> results = ProcedureGroup.create().executor(executor).add("second",
+				Procedure.create(session, "sp_second(:a)").input("a", 2)).add("first",
+				Procedure.create(session, "sp_first(:a)").input("a", 1)).execute();
+
+		assertEquals(Arrays.asList("second", "first"), new ArrayList<String>(results.keySet()));
+		assertNotNull(results.get("second"));
+		assertNotNull(results.get("first"));
+		assertEquals(2, provider.opened.get());
+	}
+
+	@Test(expected = CannotInvokeProcedureException.class)
+	public void shouldFailGroupWhenAnyProcedureFails() throws Exception {
+		provider.failure = new SQLException("no connection");
+
+		ProcedureGroup.create().executor(executor).add("a", Procedure.create(session, "sp_a(:a)").input("a", 1))
+				.execute();
+	}
+
+	@Test
+	public void shouldCancelGroupAfterDeadline() throws Exception {
+		provider.blocking = true;
+
+		try {
+			ProcedureGroup.create().executor(executor).add("slow",
+					Procedure.create(session, "sp_slow(:a)").input("a", 1)).deadline(100, TimeUnit.MILLISECONDS)
+					.execute();
+			fail();
+		} catch (CannotInvokeProcedureException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+
+		assertTrue(provider.released.await(5, TimeUnit.SECONDS));
+		assertTrue(provider.statement.cancelled);
+	}
+
+	@Test
+	public void shouldFailGroupInsteadOfRunningOnCallerThread() throws Exception {
+		final ThreadPoolExecutor saturated = ProcedureExecutors.newBoundedPool(1, 1);
+		final CountDownLatch busy = new CountDownLatch(1);
+		try {
+			// Ocupa a thread e a fila do pool
+			for (int i = 0; i < 2; i++) {
+				saturated.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							busy.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				});
+			}
+
+			ProcedureGroup.create().executor(saturated).add("a", Procedure.create(session, "sp_a(:a)").input("a", 1))
+					.deadline(5, TimeUnit.SECONDS).execute();
+			fail();
+		} catch (CannotInvokeProcedureException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+			assertEquals(0, provider.opened.get());
+		} finally {
+			busy.countDown();
+			saturated.shutdown();
+		}
+	}
+
+	/**
+	 * Statement cuja execução aguarda {@link #cancel()}.
+	 */
+	private static class BlockingStatement extends MockCallableStatement {
+
+		private final CountDownLatch started;
+
+		private final CountDownLatch cancel = new CountDownLatch(1);
+
+		private volatile boolean cancelled = false;
+
+		BlockingStatement(Connection connection, String sql, CountDownLatch started) {
+			super(connection, sql);
+			this.started = started;
+		}
+
+		@Override
+		public boolean execute() throws SQLException {
+			started.countDown();
+			// Como um driver JDBC, ignora a interrupção da thread
+			boolean interrupted = false;
+			while (true) {
+				try {
+					cancel.await(5, TimeUnit.SECONDS);
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			throw new SQLException("cancelled");
+		}
+
+		@Override
+		public void cancel() throws SQLException {
+			cancelled = true;
+			cancel.countDown();
+		}
+	}
+
+	/**
+	 * Provider de conexões mockrunner; registra a última conexão entregue.
+	 */
+	private static class MockProvider implements ConnectionProvider {
+
+		final AtomicInteger opened = new AtomicInteger();
+
+		final CountDownLatch started = new CountDownLatch(1);
+
+		final CountDownLatch released = new CountDownLatch(1);
+
+		volatile SQLException failure;
+
+		volatile boolean blocking = false;
+
+		volatile MockConnection last;
+
+		volatile BlockingStatement statement;
+
+		@Override
+		public void configure(Properties props) {
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			if (failure != null) {
+				throw failure;
+			}
+			opened.incrementAndGet();
+			last = new MockConnection() {
+				@Override
+				public CallableStatement prepareCall(String sql) throws SQLException {
+					if (!blocking) {
+						return super.prepareCall(sql);
+					}
+					statement = new BlockingStatement(this, sql, started);
+					return statement;
+				}
+			};
+			return last;
+		}
+
+		@Override
+		public void closeConnection(Connection conn) throws SQLException {
+			conn.close();
+			released.countDown();
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public boolean supportsAggressiveRelease() {
+			return false;
+		}
+	}
+
+	/**
+	 * Sessão mínima: a SessionFactory expõe apenas o connection provider.
+	 */
+	private static Session session(final ConnectionProvider provider) {
+		final SessionFactoryImplementor factory = (SessionFactoryImplementor) Proxy.newProxyInstance(
+				SessionFactoryImplementor.class.getClassLoader(), new Class<?>[] { SessionFactoryImplementor.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("getConnectionProvider")) {
+							return provider;
+						}
+						return identity(proxy, method, args);
+					}
+				});
+		return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] { Session.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("getSessionFactory")) {
+							return factory;
+						}
+						return identity(proxy, method, args);
+					}
+				});
+	}
+
+	private static Object identity(Object proxy, Method method, Object[] args) {
+		if (method.getName().equals("hashCode")) {
+			return System.identityHashCode(proxy);
+		}
+		if (method.getName().equals("equals")) {
+			return proxy == args[0];
+		}
+		throw new UnsupportedOperationException(method.getName());
+	}
+}
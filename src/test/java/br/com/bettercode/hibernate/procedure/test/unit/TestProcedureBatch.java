@@ -0,0 +1,157 @@
+package br.com.bettercode.hibernate.procedure.test.unit;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.bettercode.procedure.Procedure;
+import br.com.bettercode.procedure.ProcedureBatch;
+import br.com.bettercode.procedure.ProcedureDefaults;
+
+import com.mockrunner.mock.jdbc.MockCallableStatement;
+import com.mockrunner.mock.jdbc.MockConnection;
+
+public class TestProcedureBatch {
+
+	private MockConnection connection;
+
+	private Session session;
+
+	private final List<BatchStatement> statements = new ArrayList<BatchStatement>();
+
+	@Before
+	public void setUp() {
+		connection = new MockConnection() {
+			@Override
+			public CallableStatement prepareCall(String sql) throws SQLException {
+				final BatchStatement statement = new BatchStatement(this, sql);
+				statement.setCallableStatementResultSetHandler(getCallableStatementResultSetHandler());
+				statements.add(statement);
+				return statement;
+			}
+		};
+		session = session(connection);
+	}
+
+	@After
+	public void tearDown() {
+		ProcedureDefaults.setTimeout(0, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void shouldFlushWhenBatchSizeIsReached() throws Exception {
+		final ProcedureBatch batch = ProcedureBatch.create(session, "sp_log(:id,:text)").batchSize(2);
+
+		batch.input("id", 1).input("text", "row1").addBatch();
+		assertEquals(1, batch.getPendingRows());
+		assertTrue(statements.isEmpty());
+
+		batch.input("id", 2).input("text", "row2").addBatch();
+		assertEquals(0, batch.getPendingRows());
+		assertEquals(1, statements.size());
+		assertEquals(1, statements.get(0).executions);
+	}
+
+	@Test
+	public void shouldReturnUpdateCountsInInsertionOrder() throws Exception {
+		final ProcedureBatch batch = ProcedureBatch.create(session, "sp_log(:id,:text)").batchSize(2);
+
+		batch.add(1, "row1").add(2, "row2").add(3, "row3");
+		assertEquals(1, batch.getPendingRows());
+
+		assertArrayEquals(new int[] { 10, 20, 30 }, batch.execute());
+		assertEquals(0, batch.getPendingRows());
+		assertEquals(0, batch.execute().length);
+	}
+
+	@Test
+	public void shouldNotInheritOptionsOfCachedStatement() throws Exception {
+		ProcedureDefaults.setTimeout(30, TimeUnit.SECONDS);
+		Procedure.create(session, "sp_log(:id,:text)").input("id", 1).input("text", "row1").fetchSize(500)
+				.maxRows(1).timeout(1, TimeUnit.SECONDS).execute();
+
+		ProcedureBatch.create(session, "sp_log(:id,:text)").add(2, "row2").execute();
+
+		// Mesmo statement, reaproveitado do cache
+		assertEquals(1, statements.size());
+		assertEquals(1, statements.get(0).executions);
+		assertEquals(0, statements.get(0).getFetchSize());
+		assertEquals(0, statements.get(0).getMaxRows());
+		assertEquals(30, statements.get(0).getQueryTimeout());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectRowWithWrongArity() throws Exception {
+		ProcedureBatch.create(session, "sp_log(:id,:text)").add(1);
+	}
+
+	/**
+	 * Statement que retorna como contagem de cada linha do lote o primeiro
+	 * parâmetro multiplicado por 10.
+	 */
+	private static class BatchStatement extends MockCallableStatement {
+
+		private final List<Integer> counts = new ArrayList<Integer>();
+
+		private int executions = 0;
+
+		BatchStatement(Connection connection, String sql) {
+			super(connection, sql);
+		}
+
+		@Override
+		public void addBatch() throws SQLException {
+			counts.add(((Number) getParameterMap().get(1)).intValue() * 10);
+			super.addBatch();
+		}
+
+		@Override
+		public int[] executeBatch() throws SQLException {
+			executions++;
+			final int[] result = new int[counts.size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = counts.get(i);
+			}
+			counts.clear();
+			clearBatch();
+			return result;
+		}
+	}
+
+	/**
+	 * Sessão mínima: apenas doWork é suportado.
+	 */
+	private static Session session(final MockConnection connection) {
+		return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] { Session.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("doWork")) {
+							((Work) args[0]).execute(connection);
+							return null;
+						}
+						if (method.getName().equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						}
+						if (method.getName().equals("equals")) {
+							return proxy == args[0];
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+}
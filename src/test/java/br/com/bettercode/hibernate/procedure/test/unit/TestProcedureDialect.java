@@ -0,0 +1,164 @@
+package br.com.bettercode.hibernate.procedure.test.unit;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import oracle.jdbc.OracleConnection;
+
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQL5InnoDBDialect;
+import org.hibernate.dialect.Oracle10gDialect;
+import org.hibernate.dialect.SQLServerDialect;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.engine.SessionImplementor;
+import org.junit.Test;
+
+import br.com.bettercode.procedure.MySqlProcedureDialect;
+import br.com.bettercode.procedure.OracleProcedureDialect;
+import br.com.bettercode.procedure.Procedure;
+import br.com.bettercode.procedure.ProcedureDialect;
+import br.com.bettercode.procedure.SqlServerProcedureDialect;
+import br.com.bettercode.procedure.SqlType;
+
+public class TestProcedureDialect {
+
+	@Test
+	public void shouldResolveDialectFromSessionFactory() throws Exception {
+		assertTrue(ProcedureDialect.of(factory(new Oracle10gDialect())) instanceof OracleProcedureDialect);
+		assertTrue(ProcedureDialect.of(factory(new SQLServerDialect())) instanceof SqlServerProcedureDialect);
+		assertTrue(ProcedureDialect.of(factory(new MySQL5InnoDBDialect())) instanceof MySqlProcedureDialect);
+		assertSame(ProcedureDialect.DEFAULT, ProcedureDialect.of(factory(new H2Dialect())));
+	}
+
+	@Test
+	public void shouldResolveLegacyOracleDialect() throws Exception {
+		final Dialect legacy = (Dialect) Class.forName("org.hibernate.dialect.OracleDialect").newInstance();
+
+		assertTrue(ProcedureDialect.of(factory(legacy)) instanceof OracleProcedureDialect);
+	}
+
+	@Test
+	public void shouldResolveOncePerSessionFactory() throws Exception {
+		final SessionFactoryImplementor factory = factory(new Oracle10gDialect());
+		final SessionFactoryImplementor other = factory(new SQLServerDialect());
+
+		final ProcedureDialect dialect = ProcedureDialect.of(factory);
+		assertTrue(ProcedureDialect.of(other) instanceof SqlServerProcedureDialect);
+		assertSame(dialect, ProcedureDialect.of(factory));
+	}
+
+	@Test
+	public void shouldAcceptCursorOutputWhereSupported() throws Exception {
+		Procedure.create(session(factory(new Oracle10gDialect())), "sp_cursor(:arg1,:cursor)").output("cursor",
+				SqlType.CURSOR);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectCursorOutputOnSqlServer() throws Exception {
+		Procedure.create(session(factory(new SQLServerDialect())), "sp_cursor(:arg1,:cursor)").output("cursor",
+				SqlType.CURSOR);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectCursorOutputOnMySql() throws Exception {
+		Procedure.create(session(factory(new MySQL5InnoDBDialect())), "sp_cursor(:arg1,:cursor)").output("cursor",
+				SqlType.CURSOR);
+	}
+
+	@Test
+	public void shouldEnableOracleImplicitCachingOnce() throws Exception {
+		final List<String> calls = new ArrayList<String>();
+		final Connection connection = oracleConnection(calls);
+		final OracleProcedureDialect dialect = new OracleProcedureDialect(16);
+
+		dialect.configure(connection);
+		dialect.configure(connection);
+
+		assertEquals(Arrays.asList("setStatementCacheSize(16)", "setImplicitCachingEnabled(true)"), calls);
+	}
+
+	@Test
+	public void shouldNotTouchOracleCachingWhenDisabled() throws Exception {
+		final List<String> calls = new ArrayList<String>();
+
+		new OracleProcedureDialect(0).configure(oracleConnection(calls));
+
+		assertTrue(calls.isEmpty());
+	}
+
+	/**
+	 * Conexão Oracle que registra as alterações do cache implícito.
+	 */
+	private static Connection oracleConnection(final List<String> calls) {
+		return (Connection) Proxy.newProxyInstance(OracleConnection.class.getClassLoader(),
+				new Class<?>[] { OracleConnection.class }, new InvocationHandler() {
+					private boolean implicitCaching = false;
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("getImplicitCachingEnabled")) {
+							return implicitCaching;
+						}
+						if (method.getName().equals("setImplicitCachingEnabled")) {
+							implicitCaching = (Boolean) args[0];
+						}
+						if (method.getName().startsWith("set")) {
+							calls.add(String.format("%s(%s)", method.getName(), args[0]));
+							return null;
+						}
+						return identity(proxy, method, args);
+					}
+				});
+	}
+
+	/**
+	 * SessionFactory mínima: apenas getDialect é suportado.
+	 */
+	private static SessionFactoryImplementor factory(final Dialect dialect) {
+		return (SessionFactoryImplementor) Proxy.newProxyInstance(SessionFactoryImplementor.class.getClassLoader(),
+				new Class<?>[] { SessionFactoryImplementor.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("getDialect")) {
+							return dialect;
+						}
+						return identity(proxy, method, args);
+					}
+				});
+	}
+
+	/**
+	 * Sessão mínima: apenas getFactory é suportado.
+	 */
+	private static Session session(final SessionFactoryImplementor factory) {
+		return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] { Session.class,
+				SessionImplementor.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("getFactory")) {
+					return factory;
+				}
+				return identity(proxy, method, args);
+			}
+		});
+	}
+
+	private static Object identity(Object proxy, Method method, Object[] args) {
+		if (method.getName().equals("hashCode")) {
+			return System.identityHashCode(proxy);
+		}
+		if (method.getName().equals("equals")) {
+			return proxy == args[0];
+		}
+		throw new UnsupportedOperationException(method.getName());
+	}
+}
@@ -0,0 +1,350 @@
+package br.com.bettercode.hibernate.procedure.test.unit;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.channels.Channels;
+import java.sql.Array;
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.bettercode.procedure.Procedure;
+import br.com.bettercode.procedure.ProcedureDefaults;
+import br.com.bettercode.procedure.ProcedureResult;
+import br.com.bettercode.procedure.SqlArray;
+import br.com.bettercode.procedure.SqlType;
+import br.com.bettercode.resulttransformer.ResultSetIterator;
+import br.com.bettercode.resulttransformer.RowHandler;
+
+import com.google.common.collect.Lists;
+import com.mockrunner.mock.jdbc.MockArray;
+import com.mockrunner.mock.jdbc.MockBlob;
+import com.mockrunner.mock.jdbc.MockCallableStatement;
+import com.mockrunner.mock.jdbc.MockClob;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class TestProcedureOptions {
+
+	private MockConnection connection;
+
+	private Session session;
+
+	@Before
+	public void setUp() {
+		connection = new MockConnection();
+		session = session(connection);
+	}
+
+	@After
+	public void tearDown() {
+		ProcedureDefaults.setFetchBudget(0);
+		ProcedureDefaults.setFetchSize(0);
+		ProcedureDefaults.setMaxRows(0);
+		ProcedureDefaults.setTimeout(0, TimeUnit.SECONDS);
+		ProcedureDefaults.setSpillRows(0);
+	}
+
+	@Test
+	public void shouldApplyStatementOptions() throws Exception {
+		Procedure.create(session, "sp_options(:arg1)").input("arg1", 1).fetchSize(500).maxRows(20)
+				.timeout(1500, TimeUnit.MILLISECONDS).execute();
+
+		final MockCallableStatement call = lastStatement();
+		assertEquals(500, call.getFetchSize());
+		assertEquals(20, call.getMaxRows());
+		assertEquals(2, call.getQueryTimeout());
+	}
+
+	@Test
+	public void shouldApplyDefaultStatementOptions() throws Exception {
+		ProcedureDefaults.setFetchSize(100);
+		ProcedureDefaults.setMaxRows(5);
+		ProcedureDefaults.setTimeout(3, TimeUnit.SECONDS);
+
+		Procedure.create(session, "sp_options(:arg1)").input("arg1", 1).execute();
+		MockCallableStatement call = lastStatement();
+		assertEquals(100, call.getFetchSize());
+		assertEquals(5, call.getMaxRows());
+		assertEquals(3, call.getQueryTimeout());
+
+		// Zero na procedure desabilita o padrão
+		Procedure.create(session, "sp_options(:arg1)").input("arg1", 1).fetchSize(0).maxRows(0).timeout(0,
+				TimeUnit.SECONDS).execute();
+		call = lastStatement();
+		assertEquals(0, call.getFetchSize());
+		assertEquals(0, call.getMaxRows());
+		assertEquals(0, call.getQueryTimeout());
+	}
+
+	@Test
+	public void shouldRoundTimeoutUpToWholeSeconds() throws Exception {
+		ProcedureDefaults.setTimeout(1, TimeUnit.NANOSECONDS);
+		assertEquals(1, ProcedureDefaults.getTimeoutSeconds());
+		ProcedureDefaults.setTimeout(1000, TimeUnit.MILLISECONDS);
+		assertEquals(1, ProcedureDefaults.getTimeoutSeconds());
+		ProcedureDefaults.setTimeout(1001, TimeUnit.MILLISECONDS);
+		assertEquals(2, ProcedureDefaults.getTimeoutSeconds());
+		ProcedureDefaults.setTimeout(0, TimeUnit.MILLISECONDS);
+		assertEquals(0, ProcedureDefaults.getTimeoutSeconds());
+	}
+
+	@Test
+	public void shouldClampTimeoutToIntegerRange() throws Exception {
+		ProcedureDefaults.setTimeout(Integer.MAX_VALUE, TimeUnit.SECONDS);
+		assertEquals(Integer.MAX_VALUE, ProcedureDefaults.getTimeoutSeconds());
+		ProcedureDefaults.setTimeout(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		assertEquals(Integer.MAX_VALUE, ProcedureDefaults.getTimeoutSeconds());
+		ProcedureDefaults.setTimeout(Long.MAX_VALUE, TimeUnit.DAYS);
+		assertEquals(Integer.MAX_VALUE, ProcedureDefaults.getTimeoutSeconds());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectNegativeTimeout() throws Exception {
+		Procedure.create(session, "sp_options(:arg1)").timeout(-1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void shouldLearnFetchSizeFromPreviousExecutions() throws Exception {
+		final MockResultSet rs = new MockResultSet("1");
+		rs.addColumn("atletico", new String[] { "a", "b", "c" });
+		connection.getCallableStatementResultSetHandler().prepareGlobalOutParameter(
+				Collections.singletonMap(Integer.valueOf(2), rs));
+		ProcedureDefaults.setFetchBudget(1 << 20);
+
+		Procedure.create(session, "sp_adaptive(:arg1,:cursor)").input("arg1", 1).output("cursor",
+				SqlType.ORACLE_CURSOR).execute().mapResultSet("cursor", Object2.class);
+		rs.beforeFirst();
+		Procedure.create(session, "sp_adaptive(:arg1,:cursor)").input("arg1", 1).output("cursor",
+				SqlType.ORACLE_CURSOR).execute();
+
+		// Poucas linhas: o fetch size mínimo já traz tudo em uma ida
+		assertEquals(10, lastStatement().getFetchSize());
+		assertEquals(10, rs.getFetchSize());
+	}
+
+	@Test
+	public void shouldReleaseStatementAfterMappingCursor() throws Exception {
+		final MockResultSet rs = new MockResultSet("1");
+		rs.addColumn("atletico", new String[] { "a", "b" });
+		connection.getCallableStatementResultSetHandler().prepareGlobalOutParameter(
+				Collections.singletonMap(Integer.valueOf(2), rs));
+
+		final ProcedureResult result = Procedure.create(session, "sp_mapped(:arg1,:cursor)").input("arg1", 1)
+				.output("cursor", SqlType.ORACLE_CURSOR).execute();
+		assertFalse(lastStatement().isClosed());
+
+		assertEquals(2, result.mapResultSet("cursor", Object2.class).size());
+
+		// Como ao percorrer o iterador até o fim
+		assertTrue(rs.isClosed());
+		assertTrue(lastStatement().isClosed());
+	}
+
+	@Test
+	public void shouldKeepSpilledListAfterLastCursorIsRead() throws Exception {
+		final MockResultSet first = new MockResultSet("1");
+		first.addColumn("atletico", new String[] { "a", "b", "c" });
+		final MockResultSet second = new MockResultSet("2");
+		second.addColumn("atletico", new String[] { "d" });
+		final Map<Integer, Object> outputs = new HashMap<Integer, Object>();
+		outputs.put(2, first);
+		outputs.put(3, second);
+		connection.getCallableStatementResultSetHandler().prepareGlobalOutParameter(outputs);
+		ProcedureDefaults.setSpillRows(1);
+
+		final ProcedureResult result = Procedure.create(session, "sp_spilled(:arg1,:first,:second)").input("arg1",
+				1).output("first", SqlType.ORACLE_CURSOR).output("second", SqlType.ORACLE_CURSOR).execute();
+		try {
+			final List<Object2> spilled = result.mapResultSet("first", Object2.class);
+			final ResultSetIterator<Object2> it = result.iterateResultSet("second", Object2.class);
+			while (it.hasNext()) {
+				it.next();
+			}
+			assertTrue(lastStatement().isClosed());
+
+			// O arquivo só é removido ao fechar o resultado
+			assertEquals("c", spilled.get(2).getF1());
+		} finally {
+			result.close();
+		}
+	}
+
+	@Test
+	public void shouldBindTimestampInput() throws Exception {
+		final Timestamp now = new Timestamp(System.currentTimeMillis());
+		Procedure.create(session, "sp_timestamp(:arg1)").input("arg1", now).execute();
+
+		assertEquals(now, lastStatement().getParameter(1));
+	}
+
+	@Test
+	public void shouldBindCollectionAsArray() throws Exception {
+		final List<String> typeNames = new ArrayList<String>();
+		connection = new MockConnection() {
+			public Array createArrayOf(String typeName, Object[] elements) {
+				typeNames.add(typeName);
+				return new MockArray(elements);
+			}
+		};
+		session = session(connection);
+
+		Procedure.create(session, "sp_array(:ids,:names)").input("ids", Arrays.asList(1L, 2L, 3L)).input("names",
+				SqlArray.of("NVARCHAR", Arrays.asList("a", "b"))).execute();
+
+		assertEquals(Arrays.asList("BIGINT", "NVARCHAR"), typeNames);
+		final Array ids = (Array) lastStatement().getParameter(1);
+		assertArrayEquals(new Object[] { 1L, 2L, 3L }, (Object[]) ids.getArray());
+	}
+
+	@Test
+	public void shouldReadMultipleResultSetsInOneExecution() throws Exception {
+		final MockResultSet first = new MockResultSet("1");
+		first.addColumn("atletico", new String[] { "a", "b" });
+		final MockResultSet second = new MockResultSet("2");
+		second.addColumn("atletico", new String[] { "c" });
+		final MockResultSet skipped = new MockResultSet("3");
+		skipped.addColumn("atletico", new String[] { "d" });
+		// result set, contagem, result set, result set excedente
+		final Object[] results = { first, Integer.valueOf(3), second, skipped };
+		connection = new MockConnection() {
+			public CallableStatement prepareCall(String sql) {
+				return new MockCallableStatement(this, sql) {
+					private int current = 0;
+
+					public boolean execute() {
+						return current < results.length && results[current] instanceof ResultSet;
+					}
+
+					public ResultSet getResultSet() {
+						return (ResultSet) results[current];
+					}
+
+					public int getUpdateCount() {
+						return current < results.length ? (Integer) results[current] : -1;
+					}
+
+					public boolean getMoreResults() {
+						current++;
+						return execute();
+					}
+				};
+			}
+		};
+		session = session(connection);
+
+		final List<Object2> rows = Lists.newArrayList();
+		final ProcedureResult result = Procedure.create(session, "sp_many(:arg1)").input("arg1", 1).resultSets(
+				Object2.class).resultSet(1, Object2.class, new RowHandler<Object2>() {
+			@Override
+			public void handleRow(Object2 row) {
+				rows.add(row);
+			}
+		}).execute();
+
+		assertEquals(3, result.getResultSetCount());
+		assertEquals(2, result.getResultSet(0).size());
+		assertSame(result.getResultSet(0), result.getResultSet());
+		assertNull(result.getResultSet(1));
+		assertNull(result.getResultSet(2));
+		assertEquals(1, rows.size());
+		assertEquals(Collections.singletonList(3), result.getUpdateCounts());
+	}
+
+	@Test
+	public void shouldStreamLobOutputs() throws Exception {
+		final byte[] document = new byte[200 * 1024];
+		new Random(7).nextBytes(document);
+		final Map<Integer, Object> outputs = new HashMap<Integer, Object>();
+		outputs.put(2, new MockBlob(document));
+		outputs.put(3, new MockClob("atletico"));
+		connection.getCallableStatementResultSetHandler().prepareGlobalOutParameter(outputs);
+
+		final ProcedureResult result = Procedure.create(session, "sp_document(:id,:content,:notes)").input("id", 1)
+				.output("content", SqlType.BLOB).output("notes", SqlType.CLOB).execute();
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			assertEquals(document.length, result.transferTo("content", Channels.newChannel(bytes)));
+			assertTrue(Arrays.equals(document, bytes.toByteArray()));
+
+			final StringWriter notes = new StringWriter();
+			assertEquals(8, result.transferTo("notes", notes));
+			assertEquals("atletico", notes.toString());
+			assertEquals('a', result.getCharacterStream("notes").read());
+		} finally {
+			result.close();
+		}
+	}
+
+	@Test
+	public void shouldKeepLobOutputsReadableAfterCursorIsRead() throws Exception {
+		final MockResultSet rs = new MockResultSet("1");
+		rs.addColumn("atletico", new String[] { "a" });
+		final Map<Integer, Object> outputs = new HashMap<Integer, Object>();
+		outputs.put(2, rs);
+		outputs.put(3, new MockClob("galo"));
+		connection.getCallableStatementResultSetHandler().prepareGlobalOutParameter(outputs);
+
+		final ProcedureResult result = Procedure.create(session, "sp_both(:arg1,:cursor,:notes)").input("arg1", 1)
+				.output("cursor", SqlType.ORACLE_CURSOR).output("notes", SqlType.CLOB).execute();
+		try {
+			assertEquals(1, result.mapResultSet("cursor", Object2.class).size());
+
+			// O LOB depende do statement, que só é fechado com o resultado
+			assertFalse(lastStatement().isClosed());
+			final StringWriter notes = new StringWriter();
+			assertEquals(4, result.transferTo("notes", notes));
+			assertEquals("galo", notes.toString());
+		} finally {
+			result.close();
+		}
+		assertTrue(lastStatement().isClosed());
+	}
+
+	private MockCallableStatement lastStatement() {
+		final List<?> statements = connection.getCallableStatementResultSetHandler().getCallableStatements();
+		return (MockCallableStatement) statements.get(statements.size() - 1);
+	}
+
+	/**
+	 * Sessão mínima: apenas doWork é suportado.
+	 */
+	private static Session session(final MockConnection connection) {
+		return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] { Session.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("doWork")) {
+							((Work) args[0]).execute(connection);
+							return null;
+						}
+						if (method.getName().equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						}
+						if (method.getName().equals("equals")) {
+							return proxy == args[0];
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+}
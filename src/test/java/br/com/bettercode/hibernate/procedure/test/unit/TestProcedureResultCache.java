@@ -0,0 +1,223 @@
+package br.com.bettercode.hibernate.procedure.test.unit;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.jdbc.Work;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.com.bettercode.procedure.Procedure;
+import br.com.bettercode.procedure.ProcedureResult;
+import br.com.bettercode.procedure.ProcedureResultCache;
+
+import com.mockrunner.mock.jdbc.MockCallableStatement;
+import com.mockrunner.mock.jdbc.MockConnection;
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class TestProcedureResultCache {
+
+	private static final String SP_LOOKUP = "sp_lookup(:arg1)";
+
+	private MockConnection connection;
+
+	private SessionFactory factory;
+
+	private Session session;
+
+	@Before
+	public void setUp() {
+		connection = new MockConnection();
+		factory = factory();
+		session = session(factory, connection);
+		ProcedureResultCache.getDefault().invalidateAll();
+	}
+
+	@After
+	public void tearDown() {
+		ProcedureResultCache.getDefault().invalidateAll();
+	}
+
+	@Test
+	public void shouldReuseResultForSameInputs() throws Exception {
+		final ProcedureResultCache cache = ProcedureResultCache.getDefault();
+		final long hits = cache.getHits();
+
+		Procedure.create(session, SP_LOOKUP).cache(1, TimeUnit.MINUTES).input("arg1", 1).execute();
+		Procedure.create(session, SP_LOOKUP).cache(1, TimeUnit.MINUTES).input("arg1", 1).execute();
+		Procedure.create(session, SP_LOOKUP).cache(1, TimeUnit.MINUTES).input("arg1", 2).execute();
+
+		assertEquals(2, executions());
+		assertEquals(hits + 1, cache.getHits());
+		assertEquals(2, cache.getSize());
+	}
+
+	@Test
+	public void shouldExecuteAgainAfterInvalidation() throws Exception {
+		Procedure.create(session, SP_LOOKUP).cache(1, TimeUnit.MINUTES).input("arg1", 1).execute();
+		ProcedureResultCache.getDefault().invalidate("sp_lookup");
+		Procedure.create(session, SP_LOOKUP).cache(1, TimeUnit.MINUTES).input("arg1", 1).execute();
+
+		assertEquals(2, executions());
+	}
+
+	@Test
+	public void shouldNotShareResultsBetweenSessionFactories() throws Exception {
+		final Session other = session(factory(), connection);
+
+		Procedure.create(session, SP_LOOKUP).cache(1, TimeUnit.MINUTES).input("arg1", 1).execute();
+		Procedure.create(other, SP_LOOKUP).cache(1, TimeUnit.MINUTES).input("arg1", 1).execute();
+
+		assertEquals(2, executions());
+		assertEquals(2, ProcedureResultCache.getDefault().getSize());
+	}
+
+	@Test
+	public void shouldReturnDetachedListsToEveryCaller() throws Exception {
+		final MockResultSet rs = new MockResultSet("1");
+		rs.addColumn("atletico", new String[] { "a", "b" });
+		final Session listing = session(factory, new MockConnection() {
+			@Override
+			public CallableStatement prepareCall(String sql) throws SQLException {
+				return new MockCallableStatement(this, sql) {
+					@Override
+					public boolean execute() throws SQLException {
+						return true;
+					}
+
+					@Override
+					public ResultSet getResultSet() throws SQLException {
+						return rs;
+					}
+				};
+			}
+		});
+
+		final ProcedureResult first = Procedure.create(listing, SP_LOOKUP, Object2.class).cache(1, TimeUnit.MINUTES)
+				.input("arg1", 1).execute();
+		final ProcedureResult second = Procedure.create(listing, SP_LOOKUP, Object2.class).cache(1, TimeUnit.MINUTES)
+				.input("arg1", 1).execute();
+
+		assertEquals(2, first.getResultSet().size());
+		assertEquals(2, second.getResultSet().size());
+		assertNotSame(first.getResultSet(), second.getResultSet());
+		try {
+			first.getResultSet().clear();
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// Lista imutável, como as lidas do cache
+		}
+		assertEquals(2, second.getResultSet().size());
+	}
+
+	@Test
+	public void shouldNotCacheWithoutTtl() throws Exception {
+		Procedure.create(session, SP_LOOKUP).input("arg1", 1).execute();
+		Procedure.create(session, SP_LOOKUP).input("arg1", 1).execute();
+
+		assertEquals(2, executions());
+		assertEquals(0, ProcedureResultCache.getDefault().getSize());
+	}
+
+	@Test
+	public void shouldShareInFlightExecutionWithConcurrentCalls() throws Exception {
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Session slow = session(factory, connection, entered, release);
+		final AtomicInteger results = new AtomicInteger();
+
+		final Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					if (Procedure.create(slow, SP_LOOKUP).singleFlight().input("arg1", 1).execute() != null) {
+						results.incrementAndGet();
+					}
+				}
+			};
+		}
+
+		threads[0].start();
+		entered.await();
+		for (int i = 1; i < threads.length; i++) {
+			threads[i].start();
+			while (threads[i].getState() != Thread.State.WAITING) {
+				Thread.sleep(1);
+			}
+		}
+		release.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(1, executions());
+		assertEquals(threads.length, results.get());
+	}
+
+	private int executions() {
+		return connection.getCallableStatementResultSetHandler().getExecutedStatements().size();
+	}
+
+	/**
+	 * Sessão mínima: apenas doWork e getSessionFactory são suportados.
+	 */
+	private static Session session(SessionFactory factory, MockConnection connection) {
+		return session(factory, connection, new CountDownLatch(1), new CountDownLatch(0));
+	}
+
+	/**
+	 * Sessão cujo doWork sinaliza entered e aguarda release.
+	 */
+	private static Session session(final SessionFactory factory, final MockConnection connection,
+			final CountDownLatch entered, final CountDownLatch release) {
+		return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] { Session.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("doWork")) {
+							entered.countDown();
+							release.await();
+							((Work) args[0]).execute(connection);
+							return null;
+						}
+						if (method.getName().equals("getSessionFactory")) {
+							return factory;
+						}
+						return identity(proxy, method, args);
+					}
+				});
+	}
+
+	private static SessionFactory factory() {
+		return (SessionFactory) Proxy.newProxyInstance(SessionFactory.class.getClassLoader(),
+				new Class<?>[] { SessionFactory.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						return identity(proxy, method, args);
+					}
+				});
+	}
+
+	private static Object identity(Object proxy, Method method, Object[] args) {
+		if (method.getName().equals("hashCode")) {
+			return System.identityHashCode(proxy);
+		}
+		if (method.getName().equals("equals")) {
+			return proxy == args[0];
+		}
+		throw new UnsupportedOperationException(method.getName());
+	}
+}
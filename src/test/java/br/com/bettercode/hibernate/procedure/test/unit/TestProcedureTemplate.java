@@ -0,0 +1,63 @@
+package br.com.bettercode.hibernate.procedure.test.unit;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import br.com.bettercode.procedure.Procedure;
+import br.com.bettercode.procedure.ProcedureTemplate;
+
+public class TestProcedureTemplate {
+
+	@Test
+	public void shouldCompileProcedureQuery() throws Exception {
+		final ProcedureTemplate template = ProcedureTemplate.compile("sp_test(:arg1, :arg2, :out1)");
+
+		assertEquals("{ call sp_test(?, ?, ?) }", template.getQuery());
+		assertEquals(3, template.parameterCount());
+		assertEquals(0, template.indexOf("arg1"));
+		assertEquals(2, template.indexOf("out1"));
+		assertEquals(-1, template.indexOf("arg"));
+	}
+
+	@Test
+	public void shouldNotReplacePrefixOfAnotherParameter() throws Exception {
+		final ProcedureTemplate template = ProcedureTemplate.compile("sp_prefix(:a, :ab)");
+
+		assertEquals("{ call sp_prefix(?, ?) }", template.getQuery());
+		assertEquals("a", template.parameterName(0));
+		assertEquals("ab", template.parameterName(1));
+	}
+
+	@Test
+	public void shouldCompileFunctionWithReturnParameterFirst() throws Exception {
+		final ProcedureTemplate template = ProcedureTemplate.compileFunction(":ret = fn_test(:arg1,:arg2)");
+
+		assertTrue(template.isFunction());
+		assertEquals("{ ? = call fn_test(?,?) }", template.getQuery());
+		assertEquals("ret", template.parameterName(0));
+		assertEquals("arg2", template.parameterName(2));
+	}
+
+	@Test
+	public void shouldExtractProcedureName() throws Exception {
+		assertEquals("pkg.sp_name", ProcedureTemplate.compile(" pkg.sp_name (:a)").getName());
+		assertEquals("fn_name", ProcedureTemplate.compileFunction(":ret = fn_name(:a)").getName());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectFunctionWithoutReturnParameter() throws Exception {
+		ProcedureTemplate.compileFunction("fn_test(:arg1)");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectEmptySignature() throws Exception {
+		ProcedureTemplate.compile(" ");
+	}
+
+	@Test
+	public void shouldReuseCompiledTemplate() throws Exception {
+		assertSame(ProcedureTemplate.compile("sp_cached(:a)"), Procedure.compile("sp_cached(:a)"));
+		assertNotSame(ProcedureTemplate.compile("sp_cached(:a)"), ProcedureTemplate.compile("sp_cached(:b)"));
+	}
+}
@@ -0,0 +1,71 @@
+package br.com.bettercode.hibernate.procedure.test.unit;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+import br.com.bettercode.resulttransformer.ResultSetIterator;
+import br.com.bettercode.resulttransformer.ResultSetMapper;
+import br.com.bettercode.resulttransformer.RowHandler;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+
+public class TestResultSetIterator {
+
+	private MockResultSet resultSet() {
+		final MockResultSet rs = new MockResultSet("1");
+		rs.addColumn("galo", new String[] { "a", "b", "c" });
+		rs.addColumn("f2", new Integer[] { 1, 2, 3 });
+		return rs;
+	}
+
+	@Test
+	public void shouldMapRowsOnDemand() throws Exception {
+		final MockResultSet rs = resultSet();
+		final ResultSetIterator<Object2> it = ResultSetMapper.iterate(rs, Object2.class);
+
+		assertTrue(it.hasNext());
+		assertEquals("a", it.next().getF1());
+		assertEquals("b", it.next().getF1());
+		assertEquals("c", it.next().getF1());
+		assertFalse(it.hasNext());
+		assertTrue(rs.isClosed());
+	}
+
+	@Test(expected = NoSuchElementException.class)
+	public void shouldFailAfterLastRow() throws Exception {
+		final ResultSetIterator<Object2> it = ResultSetMapper.iterate(resultSet(), Object2.class);
+		while (true) {
+			it.next();
+		}
+	}
+
+	@Test
+	public void shouldCloseResultSetWhenClosedEarly() throws Exception {
+		final MockResultSet rs = resultSet();
+		final ResultSetIterator<Object2> it = ResultSetMapper.iterate(rs, Object2.class);
+		it.next();
+		it.close();
+
+		assertTrue(rs.isClosed());
+		assertFalse(it.hasNext());
+	}
+
+	@Test
+	public void shouldHandleEachRow() throws Exception {
+		final List<String> values = new ArrayList<String>();
+		final int rows = ResultSetMapper.mapResultSet(resultSet(), Object2.class, new RowHandler<Object2>() {
+			@Override
+			public void handleRow(Object2 row) {
+				values.add(row.getF1());
+			}
+		});
+
+		assertEquals(3, rows);
+		assertEquals("c", values.get(2));
+	}
+}
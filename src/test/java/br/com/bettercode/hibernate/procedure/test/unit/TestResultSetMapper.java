@@ -0,0 +1,247 @@
+package br.com.bettercode.hibernate.procedure.test.unit;
+
+import static org.junit.Assert.*;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import br.com.bettercode.resulttransformer.ColumnarResult;
+import br.com.bettercode.resulttransformer.ColumnarResult.ColumnType;
+import br.com.bettercode.resulttransformer.GeneratedRowMapper;
+import br.com.bettercode.resulttransformer.MappedResultTransformer;
+import br.com.bettercode.resulttransformer.ResultSetMapper;
+import br.com.bettercode.resulttransformer.SpilledList;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.MockResultSetMetaData;
+
+public class TestResultSetMapper {
+
+	@Test
+	public void shouldMapEveryAliasOfColumnsAnnotation() throws Exception {
+		final MockResultSet rs = new MockResultSet("1");
+		rs.addColumn("atletico", new String[] { "a", "b" });
+		rs.addColumn("f2", new Integer[] { 1, 2 });
+
+		final List<Object2> list = ResultSetMapper.mapResultSet(rs, Object2.class);
+
+		assertEquals(2, list.size());
+		assertEquals("a", list.get(0).getF1());
+		assertEquals("b", list.get(1).getF1());
+		assertNull(list.get(1).getF2());
+	}
+
+	@Test
+	public void shouldMapDifferentResultSetShapesOfSameClass() throws Exception {
+		final MockResultSet rs1 = new MockResultSet("1");
+		rs1.addColumn("galo", new String[] { "a" });
+		final MockResultSet rs2 = new MockResultSet("2");
+		rs2.addColumn("other", new String[] { "x" });
+		rs2.addColumn("galo", new String[] { "b" });
+
+		assertEquals("a", ResultSetMapper.mapResultSet(rs1, Object2.class).get(0).getF1());
+		assertEquals("b", ResultSetMapper.mapResultSet(rs2, Object2.class).get(0).getF1());
+	}
+
+	@Test
+	public void shouldReadTypedColumnsAndKeepPrimitiveDefaultOnNull() throws Exception {
+		final MockResultSet rs = new MockResultSet("1");
+		rs.addColumn("galo", new String[] { "a", "b" });
+		rs.addColumn("f2", new Integer[] { 2, null });
+		rs.addColumn("f3", new Long[] { null, 3L });
+
+		final MockResultSetMetaData metaData = new MockResultSetMetaData();
+		metaData.setColumnCount(3);
+		metaData.setColumnName(1, "galo");
+		metaData.setColumnType(1, Types.VARCHAR);
+		metaData.setColumnName(2, "f2");
+		metaData.setColumnType(2, Types.INTEGER);
+		metaData.setColumnName(3, "f3");
+		metaData.setColumnType(3, Types.NUMERIC);
+		metaData.setScale(3, 0);
+		rs.setResultSetMetaData(metaData);
+
+		final List<Object4> list = ResultSetMapper.mapResultSet(rs, Object4.class);
+
+		assertEquals("a", list.get(0).getF1());
+		assertEquals(2L, list.get(0).getF2());
+		assertNull(list.get(0).getF3());
+		assertEquals(0L, list.get(1).getF2());
+		assertEquals(Long.valueOf(3), list.get(1).getF3());
+	}
+
+	@Test
+	public void shouldEstimateRowWidthFromMetaData() throws Exception {
+		final MockResultSetMetaData metaData = new MockResultSetMetaData();
+		metaData.setColumnCount(3);
+		metaData.setColumnType(1, Types.INTEGER);
+		metaData.setColumnType(2, Types.VARCHAR);
+		metaData.setColumnDisplaySize(2, 30);
+		metaData.setColumnType(3, Types.CLOB);
+		metaData.setColumnDisplaySize(3, 0);
+
+		assertEquals(4 + 30 + 4000, ResultSetMapper.estimateRowWidth(metaData));
+	}
+
+	@Test
+	public void shouldReadResultSetByColumns() throws Exception {
+		final int rows = 100;
+		final Object[] ids = new Object[rows];
+		final Object[] amounts = new Object[rows];
+		final Object[] regions = new Object[rows];
+		for (int i = 0; i < rows; i++) {
+			ids[i] = i == 7 ? null : Integer.valueOf(i);
+			amounts[i] = Double.valueOf(i * 1.5);
+			regions[i] = i % 2 == 0 ? "SUL" : "NORTE";
+		}
+		final MockResultSet rs = new MockResultSet("columnar");
+		rs.addColumn("id", ids);
+		rs.addColumn("amount", amounts);
+		rs.addColumn("region", regions);
+		final MockResultSetMetaData metaData = new MockResultSetMetaData();
+		metaData.setColumnCount(3);
+		metaData.setColumnLabel(1, "id");
+		metaData.setColumnType(1, Types.INTEGER);
+		metaData.setColumnLabel(2, "amount");
+		metaData.setColumnType(2, Types.DOUBLE);
+		metaData.setColumnLabel(3, "region");
+		metaData.setColumnType(3, Types.VARCHAR);
+		rs.setResultSetMetaData(metaData);
+
+		final ColumnarResult result = ResultSetMapper.mapColumnar(rs);
+
+		assertEquals(rows, result.getRowCount());
+		assertEquals(ColumnType.INT, result.getColumnType(result.getColumnIndex("ID")));
+		assertEquals(99, result.getInt(99, 0));
+		assertTrue(result.isNull(7, 0));
+		assertNull(result.getObject(7, 0));
+		assertEquals(148.5, result.doubles(1)[99], 0.0);
+		assertEquals(Arrays.asList("SUL", "NORTE"), result.dictionary(2));
+		assertEquals("NORTE", result.getString(99, 2));
+		assertEquals(1, result.codes(2)[99]);
+	}
+
+	@Test
+	public void shouldSpillRowsBeyondThreshold() throws Exception {
+		final int rows = 1000;
+		final String[] f1 = new String[rows];
+		final Integer[] f2 = new Integer[rows];
+		final Long[] f3 = new Long[rows];
+		for (int i = 0; i < rows; i++) {
+			f1[i] = "row" + i;
+			f2[i] = i;
+			f3[i] = i % 3 == 0 ? null : Long.valueOf(i);
+		}
+		final MockResultSet rs = new MockResultSet("spill");
+		rs.addColumn("galo", f1);
+		rs.addColumn("f2", f2);
+		rs.addColumn("f3", f3);
+		final MockResultSetMetaData metaData = new MockResultSetMetaData();
+		metaData.setColumnCount(3);
+		metaData.setColumnName(1, "galo");
+		metaData.setColumnType(1, Types.VARCHAR);
+		metaData.setColumnName(2, "f2");
+		metaData.setColumnType(2, Types.INTEGER);
+		metaData.setColumnName(3, "f3");
+		metaData.setColumnType(3, Types.BIGINT);
+		rs.setResultSetMetaData(metaData);
+
+		final List<Object4> list = ResultSetMapper.mapResultSet(rs, Object4.class, 100, 0);
+
+		assertTrue(list instanceof SpilledList<?>);
+		final SpilledList<Object4> spilled = (SpilledList<Object4>) list;
+		assertEquals(900, spilled.getSpilledRows());
+		assertEquals(rows, list.size());
+		for (int pass = 0; pass < 2; pass++) {
+			int i = 0;
+			for (Object4 row : list) {
+				assertEquals("row" + i, row.getF1());
+				assertEquals(i, row.getF2());
+				assertEquals(i % 3 == 0 ? null : Long.valueOf(i), row.getF3());
+				i++;
+			}
+			assertEquals(rows, i);
+		}
+		assertEquals("row999", list.get(999).getF1());
+		assertEquals("row300", list.get(300).getF1());
+		assertEquals("row301", list.get(301).getF1());
+		assertEquals("row50", list.get(50).getF1());
+
+		spilled.close();
+		try {
+			list.get(500);
+			fail();
+		} catch (IllegalStateException e) {
+			// Arquivo removido
+		}
+	}
+
+	@Test
+	public void shouldUseRowMapperGeneratedAtCompileTime() throws Exception {
+		// Gerado por ColumnsProcessor na compilação dos testes
+		final GeneratedRowMapper<?> generated = (GeneratedRowMapper<?>) Class.forName(
+				Object5.class.getName() + "_RowMapper").newInstance();
+		assertEquals(Arrays.asList("f1", "f2", "f3", "f4"), Arrays.asList(generated.fields()));
+		assertEquals(Arrays.asList("f3", "atletico"), Arrays.asList(generated.columns()[2]));
+		assertTrue(generated.writesDirectly(1));
+		assertFalse(generated.writesDirectly(3));
+
+		final MockResultSet rs = new MockResultSet("1");
+		rs.addColumn("galo", new String[] { "a", "b" });
+		rs.addColumn("f2", new Integer[] { 2, null });
+		rs.addColumn("atletico", new Integer[] { null, 3 });
+		rs.addColumn("f4", new String[] { "x", "y" });
+		final MockResultSetMetaData metaData = new MockResultSetMetaData();
+		metaData.setColumnCount(4);
+		metaData.setColumnName(1, "galo");
+		metaData.setColumnType(1, Types.VARCHAR);
+		metaData.setColumnName(2, "f2");
+		metaData.setColumnType(2, Types.INTEGER);
+		metaData.setColumnName(3, "atletico");
+		metaData.setColumnType(3, Types.INTEGER);
+		metaData.setColumnName(4, "f4");
+		metaData.setColumnType(4, Types.VARCHAR);
+		rs.setResultSetMetaData(metaData);
+
+		final List<Object5> list = ResultSetMapper.mapResultSet(rs, Object5.class);
+
+		assertEquals("a", list.get(0).getF1());
+		assertEquals(2L, list.get(0).getF2());
+		assertNull(list.get(0).getF3());
+		assertEquals("x", list.get(0).getF4());
+		assertEquals(0L, list.get(1).getF2());
+		assertEquals(Integer.valueOf(3), list.get(1).getF3());
+		assertEquals("y", list.get(1).getF4());
+
+		final Object5 transformed = (Object5) new MappedResultTransformer<Object5>(Object5.class).transformTuple(
+				new Object[] { "c", 4L, 5, "z" }, new String[] { "galo", "f2", "f3", "f4" });
+		assertEquals("c", transformed.getF1());
+		assertEquals(4L, transformed.getF2());
+		assertEquals(Integer.valueOf(5), transformed.getF3());
+		assertEquals("z", transformed.getF4());
+	}
+
+	@Test
+	public void shouldGenerateRowMapperOnlyForColumnsClasses() throws Exception {
+		// Apenas @Column: gerado somente com a opção JPA do processador
+		try {
+			Class.forName(Object1.class.getName() + "_RowMapper");
+			fail();
+		} catch (ClassNotFoundException e) {
+			// Mapeado por reflexão
+		}
+
+		final GeneratedRowMapper<?> object3 = (GeneratedRowMapper<?>) Class.forName(
+				Object3.class.getName() + "_RowMapper").newInstance();
+		assertFalse(object3.embedded(0));
+		assertTrue(object3.embedded(1));
+
+		final GeneratedRowMapper<?> object4 = (GeneratedRowMapper<?>) Class.forName(
+				Object4.class.getName() + "_RowMapper").newInstance();
+		assertTrue(object4.hasSetter(0));
+		assertFalse(object4.writesDirectly(0));
+	}
+}
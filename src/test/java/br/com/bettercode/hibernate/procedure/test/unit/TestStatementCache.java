@@ -0,0 +1,157 @@
+package br.com.bettercode.hibernate.procedure.test.unit;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+
+import org.hibernate.Session;
+import org.hibernate.cfg.Environment;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.jdbc.Work;
+import org.junit.Test;
+
+import br.com.bettercode.procedure.Procedure;
+import br.com.bettercode.procedure.StatementCache;
+import br.com.bettercode.procedure.StatementCacheConnectionProvider;
+
+import com.mockrunner.mock.jdbc.MockCallableStatement;
+import com.mockrunner.mock.jdbc.MockConnection;
+
+public class TestStatementCache {
+
+	@Test
+	public void shouldReuseStatementOfSameQuery() throws Exception {
+		final MockConnection connection = new MockConnection();
+		final Session session = session(connection);
+		final long hits = StatementCache.getHits();
+		final long misses = StatementCache.getMisses();
+
+		Procedure.create(session, "sp_reused(:a)").input("a", 1).execute();
+		Procedure.create(session, "sp_reused(:a)").input("a", 2).execute();
+
+		assertEquals(1, statements(connection).size());
+		assertFalse(statement(connection, 0).isClosed());
+		assertEquals(hits + 1, StatementCache.getHits());
+		assertEquals(misses + 1, StatementCache.getMisses());
+	}
+
+	@Test
+	public void shouldCloseEvictedStatement() throws Exception {
+		final MockConnection connection = new MockConnection();
+		final Session session = session(connection);
+		final long evictions = StatementCache.getEvictions();
+
+		for (int i = 0; i <= StatementCache.getSize(); i++) {
+			Procedure.create(session, "sp_evicted" + i + "(:a)").input("a", i).execute();
+		}
+
+		assertEquals(StatementCache.getSize() + 1, statements(connection).size());
+		assertTrue(statement(connection, 0).isClosed());
+		assertFalse(statement(connection, 1).isClosed());
+		assertFalse(statement(connection, StatementCache.getSize()).isClosed());
+		assertEquals(evictions + 1, StatementCache.getEvictions());
+	}
+
+	@Test
+	public void shouldKeepStatementsOfPreviousConnection() throws Exception {
+		final MockConnection first = new MockConnection();
+		final MockConnection second = new MockConnection();
+
+		Procedure.create(session(first), "sp_switch(:a)").input("a", 1).execute();
+		Procedure.create(session(second), "sp_switch(:a)").input("a", 1).execute();
+
+		// O statement da primeira conexão não é fechado pela troca de conexão
+		assertFalse(statement(first, 0).isClosed());
+		assertEquals(1, statements(second).size());
+
+		Procedure.create(session(first), "sp_switch(:a)").input("a", 2).execute();
+
+		assertEquals(1, statements(first).size());
+		assertFalse(statement(first, 0).isClosed());
+	}
+
+	@Test
+	public void shouldCloseStatementsWhenConnectionIsReleased() throws Exception {
+		final Properties properties = new Properties();
+		properties.setProperty(Environment.CONNECTION_PROVIDER, StatementCacheConnectionProvider.class.getName());
+		properties.setProperty(StatementCacheConnectionProvider.DELEGATE_PROPERTY, MockConnectionProvider.class
+				.getName());
+		final StatementCacheConnectionProvider provider = new StatementCacheConnectionProvider();
+		provider.configure(properties);
+
+		final MockConnection connection = (MockConnection) provider.getConnection();
+		Procedure.create(session(connection), "sp_released(:a)").input("a", 1).execute();
+		assertFalse(statement(connection, 0).isClosed());
+
+		provider.closeConnection(connection);
+
+		assertTrue(statement(connection, 0).isClosed());
+		assertTrue(connection.isClosed());
+	}
+
+	private static List<?> statements(MockConnection connection) {
+		return connection.getCallableStatementResultSetHandler().getCallableStatements();
+	}
+
+	private static MockCallableStatement statement(MockConnection connection, int index) {
+		return (MockCallableStatement) statements(connection).get(index);
+	}
+
+	/**
+	 * Provider de conexões mockrunner, configurado pelo Hibernate.
+	 */
+	public static class MockConnectionProvider implements ConnectionProvider {
+
+		@Override
+		public void configure(Properties props) {
+		}
+
+		@Override
+		public Connection getConnection() {
+			return new MockConnection();
+		}
+
+		@Override
+		public void closeConnection(Connection conn) throws SQLException {
+			conn.close();
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public boolean supportsAggressiveRelease() {
+			return false;
+		}
+	}
+
+	/**
+	 * Sessão mínima: apenas doWork é suportado.
+	 */
+	private static Session session(final MockConnection connection) {
+		return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class<?>[] { Session.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if (method.getName().equals("doWork")) {
+							((Work) args[0]).execute(connection);
+							return null;
+						}
+						if (method.getName().equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						}
+						if (method.getName().equals("equals")) {
+							return proxy == args[0];
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+}
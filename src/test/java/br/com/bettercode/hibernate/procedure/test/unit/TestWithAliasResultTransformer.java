@@ -2,6 +2,9 @@ package br.com.bettercode.hibernate.procedure.test.unit;
 
 import static org.junit.Assert.*;
 
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
 import org.junit.Test;
 import org.springframework.jdbc.core.RowMapper;
 
@@ -56,6 +59,32 @@ public final class TestWithAliasResultTransformer {
 		assertNull(t.getF2());
 	}
 	
+	@Test
+	public void shouldMapEmbeddedFields() throws Exception {
+		final Object[] data = { FIELD1_VALUE, FIELD2_VALUE };
+		final String[] columns = { FIELD1_NAME, FIELD2_NAME };
+		final MappedResultTransformer transformer = new MappedResultTransformer(Object3.class);
+		final Object3 t = (Object3) transformer.transformTuple(data, columns);
+
+		assertEquals(FIELD2_VALUE, t.getF1());
+		assertNotNull(t.getObject1());
+		assertEquals(FIELD1_VALUE, t.getObject1().getF1());
+	}
+
+	@Test
+	public void shouldMapRowsSharingTheSameAliases() throws Exception {
+		final String[] columns = { FIELD1_NAME, FIELD2_NAME };
+		final MappedResultTransformer transformer = new MappedResultTransformer(Object1.class);
+		final Object1 t1 = (Object1) transformer.transformTuple(new Object[] { "a", FIELD2_VALUE }, columns);
+		final Object1 t2 = (Object1) transformer.transformTuple(new Object[] { "b", FIELD2_VALUE }, columns);
+		final Object1 t3 = (Object1) transformer.transformTuple(new Object[] { "c", "d" }, new String[] { "x",
+				FIELD1_NAME });
+
+		assertEquals("a", t1.getF1());
+		assertEquals("b", t2.getF1());
+		assertEquals("d", t3.getF1());
+	}
+
 	@Test
 	public void shouldImplementSpringRowMapper() throws Exception {
 		final RowMapper<Object1> rowMapper = new MappedResultTransformer<Object1>(Object1.class);
@@ -75,4 +104,28 @@ public final class TestWithAliasResultTransformer {
 		assertEquals(FIELD1_VALUE, t2.getF1());
 		assertNull(t2.getF2());
 	}
+
+	@Test
+	public void shouldReadResultSetMetaDataOncePerResultSet() throws Exception {
+		final RowMapper<Object1> rowMapper = new MappedResultTransformer<Object1>(Object1.class);
+		final int[] metaDataCalls = { 0 };
+		final MockResultSet rs = new MockResultSet("1") {
+			@Override
+			public ResultSetMetaData getMetaData() throws SQLException {
+				metaDataCalls[0]++;
+				return super.getMetaData();
+			}
+		};
+		rs.addColumn("galo", new String[] { "a", "b", "c" });
+
+		for (int row = 1; rs.next(); row++) {
+			rowMapper.mapRow(rs, row);
+		}
+		assertEquals(1, metaDataCalls[0]);
+
+		rs.beforeFirst();
+		rs.next();
+		assertEquals("a", rowMapper.mapRow(rs, 1).getF1());
+		assertEquals(1, metaDataCalls[0]);
+	}
 }